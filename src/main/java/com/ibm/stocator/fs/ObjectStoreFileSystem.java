@@ -40,6 +40,7 @@ import org.slf4j.LoggerFactory;
 
 import com.ibm.stocator.fs.common.Constants;
 import com.ibm.stocator.fs.common.IStoreClient;
+import com.ibm.stocator.fs.common.PushdownQuery;
 import com.ibm.stocator.fs.common.Utils;
 import com.ibm.stocator.fs.common.ObjectStoreGlobber;
 
@@ -145,6 +146,70 @@ public class ObjectStoreFileSystem extends FileSystem {
     return storageClient.getObject(hostNameScheme, f);
   }
 
+  /**
+   * Opens an object whose status was obtained from a listing, without
+   * requesting its status again. A missing object is reported by the first read
+   *
+   * @param status status of the object
+   * @return input stream of the object
+   * @throws IOException if failed to open the object
+   */
+  public FSDataInputStream open(FileStatus status) throws IOException {
+    LOG.debug("open method: {} with known status", status.getPath().toString());
+    return storageClient.getObject(hostNameScheme, status.getPath(), status);
+  }
+
+  /**
+   * Builder of an input stream on an object, with its known status
+   * or a query pushed down to the object store
+   *
+   * @param f path to the object, without query string
+   * @return builder of the input stream
+   */
+  public OpenFileBuilder openFile(Path f) {
+    return new OpenFileBuilder(f);
+  }
+
+  /**
+   * Options of an object opened with {@link ObjectStoreFileSystem#openFile(Path)}
+   */
+  public final class OpenFileBuilder {
+    private final Path path;
+    private FileStatus status;
+    private PushdownQuery query;
+
+    private OpenFileBuilder(Path f) {
+      path = f;
+    }
+
+    /**
+     * @param fileStatus known status of the object, not requested again
+     * @return this builder
+     */
+    public OpenFileBuilder withStatus(FileStatus fileStatus) {
+      status = fileStatus;
+      return this;
+    }
+
+    /**
+     * @param pushdownQuery query evaluated by the object store
+     * @return this builder
+     */
+    public OpenFileBuilder withQuery(PushdownQuery pushdownQuery) {
+      query = pushdownQuery;
+      return this;
+    }
+
+    /**
+     * @return input stream of the object or of the query result
+     * @throws IOException if failed to open the object
+     */
+    public FSDataInputStream build() throws IOException {
+      LOG.debug("open method: {} with query {}", path.toString(), query);
+      return storageClient.getObject(hostNameScheme, path, status, query);
+    }
+  }
+
   /**
    * {@inheritDoc}
    * create path of the form dataroot/objectname
@@ -82,6 +82,33 @@ public interface IStoreClient {
    */
   public FSDataInputStream getObject(String hostName, Path path) throws IOException;
 
+  /**
+   * Get object whose status is already known, for example from a listing.
+   * The object is not validated when opened, a missing object is reported
+   * by the first read
+   *
+   * @param hostName URL to host
+   * @param path path to the object
+   * @param status known status of the object, null to fetch it on open
+   * @return FSDataInputStream to the object
+   * @throws IOException if connection error
+   */
+  public FSDataInputStream getObject(String hostName, Path path,
+      FileStatus status) throws IOException;
+
+  /**
+   * Get object, filtered by a query evaluated by the object store
+   *
+   * @param hostName URL to host
+   * @param path path to the object, without query string
+   * @param status known status of the object, null to fetch it on open
+   * @param query query pushed down to the object store, null to read the object as is
+   * @return FSDataInputStream to the query result
+   * @throws IOException if connection error
+   */
+  public FSDataInputStream getObject(String hostName, Path path,
+      FileStatus status, PushdownQuery query) throws IOException;
+
   /**
    * List data root.
    * Responsible to clean / filter temporal results from the failed tasks.
@@ -0,0 +1,342 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.common;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Query pushed down to the object store when an object is read: the fields
+ * to keep, the predicate the records must match and how the records are
+ * delimited. The query is validated once when built and is immutable.
+ *
+ * A query is built with {@link #builder()} or parsed from the query string
+ * of a path, of the form
+ * {@code ?selectedFields=f1:f2:f3;whereClause=predicate}
+ */
+public final class PushdownQuery {
+  /*
+   * Parameter of the selected fields, separated by FIELD_SEPARATOR
+   */
+  public static final String SELECTED_FIELDS = "selectedFields";
+  /*
+   * Parameter of the predicate
+   */
+  public static final String WHERE_CLAUSE = "whereClause";
+  /*
+   * Parameter of the record delimiter
+   */
+  public static final String RECORD_DELIMITER = "recordDelimiter";
+  /*
+   * Parameter of the max size of a record
+   */
+  public static final String MAX_RECORD_SIZE = "maxRecordSize";
+  /*
+   * Starts the query string of a path
+   */
+  public static final String QUERY_START = "?";
+  /*
+   * Separates the parameters of a query string
+   */
+  public static final String PARAM_SEPARATOR = ";";
+  /*
+   * Separates the name and value of a parameter
+   */
+  public static final String PARAM_EQUAL = "=";
+  /*
+   * Separates the selected fields in a query string
+   */
+  public static final String FIELD_SEPARATOR = ":";
+  /*
+   * Separates the name and value of a parameter sent to the store, the
+   * parameter names can't contain it
+   */
+  public static final String STORE_PARAM_EQUAL = ":";
+
+  /*
+   * Selected fields, empty if all the fields are kept
+   */
+  private final List<String> projection;
+  /*
+   * Predicate of the kept records, null if all the records are kept
+   */
+  private final String predicate;
+  /*
+   * Record delimiter, null for the default of the store. Used by the client
+   * to align the requested ranges on records
+   */
+  private final String recordDelimiter;
+  /*
+   * Max size of a record in bytes, 0 for the default of the store
+   */
+  private final long maxRecordSize;
+  /*
+   * Other parameters passed as is to the store, sorted by name
+   */
+  private final SortedMap<String, String> parameters;
+
+  private PushdownQuery(Builder builder) {
+    projection = Collections.unmodifiableList(new ArrayList<String>(builder.projection));
+    predicate = builder.predicate;
+    recordDelimiter = builder.recordDelimiter;
+    maxRecordSize = builder.maxRecordSize;
+    parameters = Collections.unmodifiableSortedMap(new TreeMap<String, String>(
+        builder.parameters));
+  }
+
+  /**
+   * @return builder of a query
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Parses the query string of a path
+   *
+   * @param query query string, without the leading "?"
+   * @return query
+   * @throws IllegalArgumentException if a parameter is malformed
+   */
+  public static PushdownQuery parse(String query) {
+    Builder builder = new Builder();
+    for (String param : query.split(PARAM_SEPARATOR)) {
+      if (param.trim().isEmpty()) {
+        continue;
+      }
+      String[] parts = param.split(PARAM_EQUAL, 2);
+      if (parts.length != 2) {
+        throw new IllegalArgumentException("Malformed pushdown parameter " + param);
+      }
+      String name = parts[0].trim();
+      if (SELECTED_FIELDS.equals(name)) {
+        builder.select(parts[1].split(FIELD_SEPARATOR));
+      } else if (WHERE_CLAUSE.equals(name)) {
+        builder.where(parts[1]);
+      } else if (RECORD_DELIMITER.equals(name)) {
+        builder.recordDelimiter(parts[1]);
+      } else if (MAX_RECORD_SIZE.equals(name)) {
+        builder.maxRecordSize(Long.parseLong(parts[1].trim()));
+      } else {
+        builder.parameter(name, parts[1]);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * @return true if the query keeps all the fields and records
+   */
+  public boolean isEmpty() {
+    return projection.isEmpty() && predicate == null && parameters.isEmpty();
+  }
+
+  /**
+   * @return selected fields, empty if all the fields are kept
+   */
+  public List<String> getProjection() {
+    return projection;
+  }
+
+  /**
+   * @return predicate of the kept records, null if all the records are kept
+   */
+  public String getPredicate() {
+    return predicate;
+  }
+
+  /**
+   * @return record delimiter, null for the default of the store
+   */
+  public String getRecordDelimiter() {
+    return recordDelimiter;
+  }
+
+  /**
+   * @return max size of a record in bytes, 0 for the default of the store
+   */
+  public long getMaxRecordSize() {
+    return maxRecordSize;
+  }
+
+  /**
+   * @return other parameters passed as is to the store, sorted by name
+   */
+  public SortedMap<String, String> getParameters() {
+    return parameters;
+  }
+
+  /**
+   * Normalized form of the query: equal queries have the same form, which
+   * is parsed back to an equal query
+   */
+  @Override
+  public String toString() {
+    StringBuilder str = new StringBuilder();
+    if (!projection.isEmpty()) {
+      str.append(SELECTED_FIELDS).append(PARAM_EQUAL);
+      for (int i = 0; i < projection.size(); i++) {
+        str.append(i > 0 ? FIELD_SEPARATOR : "").append(projection.get(i));
+      }
+      str.append(PARAM_SEPARATOR);
+    }
+    if (predicate != null) {
+      str.append(WHERE_CLAUSE).append(PARAM_EQUAL).append(predicate).append(PARAM_SEPARATOR);
+    }
+    if (recordDelimiter != null) {
+      str.append(RECORD_DELIMITER).append(PARAM_EQUAL).append(recordDelimiter)
+          .append(PARAM_SEPARATOR);
+    }
+    if (maxRecordSize > 0) {
+      str.append(MAX_RECORD_SIZE).append(PARAM_EQUAL).append(maxRecordSize)
+          .append(PARAM_SEPARATOR);
+    }
+    for (Map.Entry<String, String> param : parameters.entrySet()) {
+      str.append(param.getKey()).append(PARAM_EQUAL).append(param.getValue())
+          .append(PARAM_SEPARATOR);
+    }
+    return str.toString();
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return obj instanceof PushdownQuery && toString().equals(obj.toString());
+  }
+
+  @Override
+  public int hashCode() {
+    return toString().hashCode();
+  }
+
+  /**
+   * Builder of a query. The query is validated when built
+   */
+  public static final class Builder {
+    private final List<String> projection = new ArrayList<String>();
+    private final SortedMap<String, String> parameters = new TreeMap<String, String>();
+    private String predicate;
+    private String recordDelimiter;
+    private long maxRecordSize;
+
+    private Builder() {
+    }
+
+    /**
+     * @param fields fields to keep, in their output order
+     * @return this builder
+     */
+    public Builder select(String... fields) {
+      for (String field : fields) {
+        projection.add(field.trim());
+      }
+      return this;
+    }
+
+    /**
+     * @param wherePredicate predicate of the kept records
+     * @return this builder
+     */
+    public Builder where(String wherePredicate) {
+      predicate = wherePredicate.trim();
+      return this;
+    }
+
+    /**
+     * @param delimiter record delimiter
+     * @return this builder
+     */
+    public Builder recordDelimiter(String delimiter) {
+      recordDelimiter = delimiter;
+      return this;
+    }
+
+    /**
+     * @param size max size of a record in bytes
+     * @return this builder
+     */
+    public Builder maxRecordSize(long size) {
+      maxRecordSize = size;
+      return this;
+    }
+
+    /**
+     * @param name name of a parameter passed as is to the store
+     * @param value value of the parameter
+     * @return this builder
+     */
+    public Builder parameter(String name, String value) {
+      parameters.put(name.trim(), value.trim());
+      return this;
+    }
+
+    /**
+     * @return validated query
+     * @throws IllegalArgumentException if the query is not valid
+     */
+    public PushdownQuery build() {
+      for (String field : projection) {
+        if (field.isEmpty() || field.contains(FIELD_SEPARATOR)) {
+          throw new IllegalArgumentException("Bad selected field '" + field + "' in "
+              + projection);
+        }
+      }
+      if (predicate != null && predicate.isEmpty()) {
+        throw new IllegalArgumentException("Empty predicate");
+      }
+      if (recordDelimiter != null && recordDelimiter.isEmpty()) {
+        throw new IllegalArgumentException("Empty record delimiter");
+      }
+      if (maxRecordSize < 0) {
+        throw new IllegalArgumentException("Negative max record size " + maxRecordSize);
+      }
+      for (String name : parameters.keySet()) {
+        if (name.isEmpty() || name.contains(STORE_PARAM_EQUAL) || name.contains(PARAM_EQUAL)
+            || SELECTED_FIELDS.equals(name) || WHERE_CLAUSE.equals(name)
+            || RECORD_DELIMITER.equals(name) || MAX_RECORD_SIZE.equals(name)) {
+          throw new IllegalArgumentException("Bad pushdown parameter name '" + name + "'");
+        }
+      }
+      // the parameters are sent in headers, the record delimiter is not
+      List<String> values = new ArrayList<String>(parameters.values());
+      values.addAll(projection);
+      if (predicate != null) {
+        values.add(predicate);
+      }
+      for (String value : values) {
+        if (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0) {
+          throw new IllegalArgumentException("Line break in pushdown parameter " + value);
+        }
+      }
+      // the normalized form is a query string
+      if (recordDelimiter != null) {
+        values.add(recordDelimiter);
+      }
+      for (String value : values) {
+        if (value.contains(PARAM_SEPARATOR)) {
+          throw new IllegalArgumentException("Parameter separator in pushdown parameter "
+              + value);
+        }
+      }
+      return new PushdownQuery(this);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.io.IOException;
+
+/**
+ * Stream over the body of an HTTP response that may be released before
+ * its end without reading the rest of the body. Closing a JOSS response
+ * drains its body, so its connection may be reused
+ */
+interface Abortable {
+
+  /**
+   * Releases the stream. Its request is aborted and its connection closed,
+   * unless the body was read to its end
+   *
+   * @throws IOException if failed to release the stream
+   */
+  void abort() throws IOException;
+}
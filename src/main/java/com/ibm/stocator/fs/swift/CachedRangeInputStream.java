@@ -0,0 +1,242 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ibm.stocator.fs.swift.cache.DiskBlockCache;
+import com.ibm.stocator.fs.swift.cache.MemoryBlockCache;
+
+/**
+ * Reads a range of an object block by block through the block caches.
+ * Blocks are looked up in the JVM wide memory cache, then in the local disk
+ * cache. Missing blocks are downloaded with a range GET and added to the
+ * enabled caches. Either cache may be disabled. Without the memory cache,
+ * disk cache hits are read from the mapped files.
+ * Blocks are keyed by container, object name, ETag and block index, so a
+ * modified object never hits the blocks of its previous version.
+ *
+ * This class is not thread-safe
+ */
+class CachedRangeInputStream extends InputStream {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(CachedRangeInputStream.class);
+  /*
+   * Input stream the blocks are downloaded for
+   */
+  private final SwiftInputStream source;
+  /*
+   * JVM wide memory block cache. Null if disabled
+   */
+  private final MemoryBlockCache memoryCache;
+  /*
+   * Local disk block cache. Null if disabled
+   */
+  private final DiskBlockCache diskCache;
+  /*
+   * Prefix of the block keys of the object
+   */
+  private final String keyPrefix;
+  /*
+   * Size of the cached blocks
+   */
+  private final int blockSize;
+  /*
+   * Length of the object
+   */
+  private final long objectLength;
+  /*
+   * Offset of the last byte of the range (inclusive)
+   */
+  private final long end;
+  /*
+   * Current offset in the object
+   */
+  private long position;
+  /*
+   * Content of the current block, positioned at the current offset
+   */
+  private ByteBuffer current;
+  /*
+   * Memory cache block backing the current content, released when done
+   */
+  private MemoryBlockCache.Block currentBlock;
+
+  /**
+   * Constructor
+   *
+   * @param sourceStream input stream the blocks are downloaded for
+   * @param memoryBlockCache JVM wide memory block cache or null
+   * @param diskBlockCache local disk block cache or null
+   * @param objectKey key of the object: container, name and ETag
+   * @param cacheBlockSize size of the cached blocks
+   * @param length length of the object
+   * @param from offset of the first byte of the range
+   * @param to offset of the last byte of the range (inclusive)
+   */
+  CachedRangeInputStream(SwiftInputStream sourceStream, MemoryBlockCache memoryBlockCache,
+      DiskBlockCache diskBlockCache, String objectKey, int cacheBlockSize, long length,
+      long from, long to) {
+    source = sourceStream;
+    memoryCache = memoryBlockCache;
+    diskCache = diskBlockCache;
+    keyPrefix = objectKey;
+    blockSize = cacheBlockSize;
+    objectLength = length;
+    end = Math.min(to, length - 1);
+    position = from;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextBlock()) {
+      return -1;
+    }
+    position++;
+    return current.get() & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!nextBlock()) {
+      return -1;
+    }
+    int bytes = Math.min(len, current.remaining());
+    current.get(b, off, bytes);
+    position += bytes;
+    return bytes;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return current == null ? 0 : current.remaining();
+  }
+
+  @Override
+  public void close() throws IOException {
+    releaseBlock();
+  }
+
+  /**
+   * Makes sure the current block has unread bytes
+   *
+   * @return false if the end of the range was reached
+   * @throws IOException if failed to download the block
+   */
+  private boolean nextBlock() throws IOException {
+    if (position > end) {
+      return false;
+    }
+    if (current != null && current.hasRemaining()) {
+      return true;
+    }
+    releaseBlock();
+    long index = position / blockSize;
+    final long blockStart = index * blockSize;
+    final String key = keyPrefix + "/" + index;
+    int length = (int) (Math.min(blockStart + blockSize, objectLength) - blockStart);
+    ByteBuffer block;
+    if (memoryCache != null) {
+      currentBlock = memoryCache.get(key, length, new MemoryBlockCache.BlockLoader() {
+        @Override
+        public void load(ByteBuffer buffer) throws IOException {
+          loadBlock(key, blockStart, buffer);
+        }
+      });
+      block = currentBlock.slice();
+    } else {
+      // a disk cache hit is read from the mapped file, without a copy
+      block = diskCache == null ? null : diskCache.get(key);
+      if (block == null || block.remaining() != length) {
+        block = ByteBuffer.allocate(length);
+        loadBlock(key, blockStart, block);
+        block.flip();
+      } else {
+        LOG.trace("Disk cache hit {}", key);
+      }
+    }
+    int blockPos = (int) (position - blockStart);
+    if (blockPos >= block.limit()) {
+      return false;
+    }
+    block.position(blockPos);
+    block.limit((int) Math.min(block.limit(), end - blockStart + 1));
+    current = block;
+    return true;
+  }
+
+  /**
+   * Fills the buffer with a block from the disk cache or downloaded
+   *
+   * @param key key of the block
+   * @param blockStart offset of the first byte of the block
+   * @param buffer buffer to fill, with exactly the size of the block remaining
+   * @throws IOException if failed to download the block
+   */
+  private void loadBlock(String key, long blockStart, ByteBuffer buffer) throws IOException {
+    ByteBuffer cached = diskCache == null ? null : diskCache.get(key);
+    if (cached != null && cached.remaining() == buffer.remaining()) {
+      LOG.trace("Disk cache hit {}", key);
+      buffer.put(cached);
+      return;
+    }
+    int start = buffer.position();
+    long blockEnd = blockStart + buffer.remaining() - 1;
+    LOG.trace("Block cache miss {}, download {} - {}", key, blockStart, blockEnd);
+    InputStream in = source.openRange(blockStart, blockEnd);
+    try {
+      ReadableByteChannel channel = Channels.newChannel(in);
+      int read = 0;
+      while (buffer.hasRemaining() && read >= 0) {
+        read = channel.read(buffer);
+      }
+    } finally {
+      in.close();
+    }
+    if (buffer.hasRemaining()) {
+      throw new IOException("Unexpected end of block " + key + " at "
+          + (blockStart + buffer.position() - start));
+    }
+    if (diskCache != null) {
+      ByteBuffer content = buffer.duplicate();
+      content.flip();
+      content.position(start);
+      diskCache.put(key, content);
+    }
+  }
+
+  private void releaseBlock() {
+    current = null;
+    if (currentBlock != null) {
+      currentBlock.release();
+      currentBlock = null;
+    }
+  }
+}
@@ -50,6 +50,80 @@ import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PROJECT_ID_PROPERTY
 import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_USER_ID_PROPERTY;
 import static com.ibm.stocator.fs.swift.SwiftConstants.FMODE_AUTOMATIC_DELETE_PROPERTY;
 import static com.ibm.stocator.fs.swift.SwiftConstants.FMODE_DELETE_TEMP_DATA;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PREFETCH_DEPTH;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PREFETCH_BUFFER_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_THREADS;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PREFETCH_DEPTH_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PREFETCH_BUFFER_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_THREADS_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PARALLEL_READS;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PARALLEL_CHUNK_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PARALLEL_READS_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PARALLEL_CHUNK_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.DISK_CACHE_DIR;
+import static com.ibm.stocator.fs.swift.SwiftConstants.DISK_CACHE_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PUSHDOWN_CACHE_DIR;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PUSHDOWN_CACHE_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PUSHDOWN_CACHE_MAX_RESULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PUSHDOWN_FALLBACK_PERIOD;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PUSHDOWN_COST_MODEL;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PUSHDOWN_INDEX;
+import static com.ibm.stocator.fs.swift.SwiftConstants.PUSHDOWN_INDEX_WRITE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.MEMORY_CACHE_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.CACHE_BLOCK_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.HTTP_MAX_CONNECTIONS;
+import static com.ibm.stocator.fs.swift.SwiftConstants.HTTP_MAX_CONNECTIONS_PER_ROUTE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.HTTP_IDLE_TIMEOUT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.HTTP_SOCKET_TIMEOUT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_POLICY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.RANDOM_RANGE_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.VECTORED_READ_MAX_GAP;
+import static com.ibm.stocator.fs.swift.SwiftConstants.VECTORED_READ_MAX_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_RETRIES;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_RETRY_BACKOFF;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_HEDGE_PERCENTILE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_HEDGE_MAX_LOAD;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_MIN_THROUGHPUT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_STALL_WINDOW;
+import static com.ibm.stocator.fs.swift.SwiftConstants.REWIND_BUFFER_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SMALL_OBJECT_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.BUFFER_POOL_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.RANGE_PIPELINE_DISTANCE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.READ_BUFFER_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.TAIL_PREFETCH_SIZE;
+import static com.ibm.stocator.fs.swift.SwiftConstants.TAIL_PREFETCH_SUFFIXES;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_DISK_CACHE_DIR_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_DISK_CACHE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_DIR_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_MAX_RESULT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_FALLBACK_PERIOD_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_COST_MODEL_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_INDEX_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_INDEX_WRITE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_MEMORY_CACHE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_CACHE_BLOCK_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_SOCKET_TIMEOUT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_POLICY_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_RANDOM_RANGE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_VECTORED_READ_MAX_GAP_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_VECTORED_READ_MAX_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_RETRIES_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_RETRY_BACKOFF_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_HEDGE_PERCENTILE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_HEDGE_MAX_LOAD_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_MIN_THROUGHPUT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_STALL_WINDOW_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_REWIND_BUFFER_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_SMALL_OBJECT_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_BUFFER_POOL_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_RANGE_PIPELINE_DISTANCE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_BUFFER_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_TAIL_PREFETCH_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_TAIL_PREFETCH_SUFFIXES_PROPERTY;
 
 /**
  * Integrates Hadoop configuration with the Swift implementation
@@ -82,6 +156,77 @@ public final class ConfigurationHandler {
     Utils.updateProperty(conf, prefix, FMODE_DELETE_TEMP_DATA, props,
         FMODE_AUTOMATIC_DELETE_PROPERTY, false);
     Utils.updateProperty(conf, prefix, PUBLIC, props, SWIFT_PUBLIC_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, PREFETCH_DEPTH, props, SWIFT_PREFETCH_DEPTH_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, PREFETCH_BUFFER_SIZE, props,
+        SWIFT_PREFETCH_BUFFER_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_THREADS, props, SWIFT_READ_THREADS_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, PARALLEL_READS, props, SWIFT_PARALLEL_READS_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, PARALLEL_CHUNK_SIZE, props,
+        SWIFT_PARALLEL_CHUNK_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, DISK_CACHE_DIR, props, SWIFT_DISK_CACHE_DIR_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, DISK_CACHE_SIZE, props, SWIFT_DISK_CACHE_SIZE_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, PUSHDOWN_CACHE_DIR, props,
+        SWIFT_PUSHDOWN_CACHE_DIR_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, PUSHDOWN_CACHE_SIZE, props,
+        SWIFT_PUSHDOWN_CACHE_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, PUSHDOWN_CACHE_MAX_RESULT, props,
+        SWIFT_PUSHDOWN_CACHE_MAX_RESULT_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, PUSHDOWN_FALLBACK_PERIOD, props,
+        SWIFT_PUSHDOWN_FALLBACK_PERIOD_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, PUSHDOWN_COST_MODEL, props,
+        SWIFT_PUSHDOWN_COST_MODEL_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, PUSHDOWN_INDEX, props, SWIFT_PUSHDOWN_INDEX_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, PUSHDOWN_INDEX_WRITE, props,
+        SWIFT_PUSHDOWN_INDEX_WRITE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, MEMORY_CACHE_SIZE, props,
+        SWIFT_MEMORY_CACHE_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, CACHE_BLOCK_SIZE, props, SWIFT_CACHE_BLOCK_SIZE_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, HTTP_MAX_CONNECTIONS, props,
+        SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, HTTP_MAX_CONNECTIONS_PER_ROUTE, props,
+        SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, HTTP_IDLE_TIMEOUT, props, SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, HTTP_SOCKET_TIMEOUT, props,
+        SWIFT_HTTP_SOCKET_TIMEOUT_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_POLICY, props, SWIFT_READ_POLICY_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, RANDOM_RANGE_SIZE, props,
+        SWIFT_RANDOM_RANGE_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, VECTORED_READ_MAX_GAP, props,
+        SWIFT_VECTORED_READ_MAX_GAP_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, VECTORED_READ_MAX_SIZE, props,
+        SWIFT_VECTORED_READ_MAX_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_RETRIES, props, SWIFT_READ_RETRIES_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_RETRY_BACKOFF, props,
+        SWIFT_READ_RETRY_BACKOFF_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_HEDGE_PERCENTILE, props,
+        SWIFT_READ_HEDGE_PERCENTILE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_HEDGE_MAX_LOAD, props,
+        SWIFT_READ_HEDGE_MAX_LOAD_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_MIN_THROUGHPUT, props,
+        SWIFT_READ_MIN_THROUGHPUT_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_STALL_WINDOW, props,
+        SWIFT_READ_STALL_WINDOW_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, REWIND_BUFFER_SIZE, props,
+        SWIFT_REWIND_BUFFER_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, SMALL_OBJECT_SIZE, props,
+        SWIFT_SMALL_OBJECT_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, BUFFER_POOL_SIZE, props,
+        SWIFT_BUFFER_POOL_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, RANGE_PIPELINE_DISTANCE, props,
+        SWIFT_RANGE_PIPELINE_DISTANCE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, READ_BUFFER_SIZE, props, SWIFT_READ_BUFFER_SIZE_PROPERTY,
+        false);
+    Utils.updateProperty(conf, prefix, TAIL_PREFETCH_SIZE, props,
+        SWIFT_TAIL_PREFETCH_SIZE_PROPERTY, false);
+    Utils.updateProperty(conf, prefix, TAIL_PREFETCH_SUFFIXES, props,
+        SWIFT_TAIL_PREFETCH_SUFFIXES_PROPERTY, false);
     String authMethod = props.getProperty(SWIFT_AUTH_METHOD_PROPERTY, KEYSTONE_V3_AUTH);
     props.setProperty(SWIFT_AUTH_METHOD_PROPERTY, authMethod);
     if (authMethod.equals(KEYSTONE_V3_AUTH)) {
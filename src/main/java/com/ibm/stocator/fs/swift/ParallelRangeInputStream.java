@@ -0,0 +1,233 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a range of an object over several concurrent HTTP connections.
+ * The range is split into chunks, each of them downloaded by a separate
+ * range GET. Up to parallelism chunks are in flight at any time and are
+ * handed to the reader in order. With the chunk being read, the memory
+ * used is bounded by (parallelism + 1) * chunkSize.
+ * The range must not exceed the length of the object, only the last chunk
+ * of the object may be shorter than requested.
+ *
+ * This class is not thread-safe
+ */
+class ParallelRangeInputStream extends InputStream {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(ParallelRangeInputStream.class);
+  /*
+   * Input stream the chunks are downloaded for
+   */
+  private final SwiftInputStream source;
+  /*
+   * Thread pool that executes the chunk downloads
+   */
+  private final ExecutorService executor;
+  /*
+   * Offset of the last byte of the range (inclusive)
+   */
+  private final long end;
+  /*
+   * Size of every chunk
+   */
+  private final int chunkSize;
+  /*
+   * Max number of chunks downloaded concurrently
+   */
+  private final int parallelism;
+  /*
+   * Length of the object
+   */
+  private final long objectLength;
+  /*
+   * Chunks in flight, in the order they should be read
+   */
+  private final LinkedList<Future<byte[]>> chunks = new LinkedList<Future<byte[]>>();
+  /*
+   * Offset of the first byte of the next chunk to submit
+   */
+  private long nextChunkStart;
+  /*
+   * Chunk currently consumed by the reader
+   */
+  private byte[] current;
+  /*
+   * Position of the reader within the current chunk
+   */
+  private int currentPos;
+  /*
+   * True if the stream was closed
+   */
+  private boolean closed;
+
+  /**
+   * Constructor. Submits the download of the first chunks
+   *
+   * @param sourceStream input stream the chunks are downloaded for
+   * @param threadPool thread pool that executes the chunk downloads
+   * @param from offset of the first byte of the range
+   * @param to offset of the last byte of the range (inclusive)
+   * @param chunkLength size of every chunk
+   * @param maxParallel max number of chunks downloaded concurrently
+   * @param length length of the object
+   */
+  ParallelRangeInputStream(SwiftInputStream sourceStream, ExecutorService threadPool,
+      long from, long to, int chunkLength, int maxParallel, long length) {
+    source = sourceStream;
+    executor = threadPool;
+    end = to;
+    chunkSize = chunkLength;
+    parallelism = maxParallel;
+    objectLength = length;
+    nextChunkStart = from;
+    submitChunks();
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+    return current[currentPos++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (!nextChunk()) {
+      return -1;
+    }
+    int bytes = Math.min(len, current.length - currentPos);
+    System.arraycopy(current, currentPos, b, off, bytes);
+    currentPos += bytes;
+    return bytes;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return current == null ? 0 : current.length - currentPos;
+  }
+
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    for (Future<byte[]> chunk : chunks) {
+      chunk.cancel(false);
+    }
+    chunks.clear();
+    current = null;
+  }
+
+  /**
+   * Makes sure the current chunk has unread bytes
+   *
+   * @return false if the end of the range was reached
+   * @throws IOException if the download of the next chunk failed
+   */
+  private boolean nextChunk() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    while (current == null || currentPos == current.length) {
+      if (chunks.isEmpty()) {
+        return false;
+      }
+      Future<byte[]> chunk = chunks.removeFirst();
+      try {
+        current = chunk.get();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while waiting for a chunk");
+      } catch (ExecutionException e) {
+        throw new IOException("Failed to download chunk", e.getCause());
+      }
+      currentPos = 0;
+      submitChunks();
+    }
+    return true;
+  }
+
+  /**
+   * Submits chunk downloads until parallelism chunks are in flight
+   */
+  private void submitChunks() {
+    while (chunks.size() < parallelism && nextChunkStart <= end) {
+      final long chunkStart = nextChunkStart;
+      final long chunkEnd = Math.min(end, chunkStart + chunkSize - 1);
+      chunks.add(executor.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          return download(chunkStart, chunkEnd);
+        }
+      }));
+      nextChunkStart = chunkEnd + 1;
+    }
+  }
+
+  /**
+   * Downloads a single chunk
+   *
+   * @param from offset of the first byte
+   * @param to offset of the last byte (inclusive)
+   * @return content of the chunk
+   * @throws EOFException if the response ended before the chunk, unless the
+   *         object ended
+   * @throws IOException if failed to read the chunk
+   */
+  private byte[] download(long from, long to) throws IOException {
+    LOG.trace("Download chunk {} - {}", from, to);
+    byte[] data = new byte[(int) (to - from + 1)];
+    int len = 0;
+    InputStream in = source.openRange(from, to);
+    try {
+      int read = 0;
+      while (len < data.length && (read = in.read(data, len, data.length - len)) > 0) {
+        len += read;
+      }
+    } finally {
+      in.close();
+    }
+    if (len == data.length) {
+      return data;
+    }
+    // the next chunk would be read at the wrong offset
+    if (to < objectLength - 1) {
+      throw new EOFException("Unexpected end of chunk " + from + " - " + to + " at "
+          + (from + len));
+    }
+    return Arrays.copyOf(data, len);
+  }
+}
@@ -0,0 +1,222 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+
+import org.javaswift.joss.command.impl.core.AbstractCommand;
+import org.javaswift.joss.command.impl.object.InputStreamWrapper;
+
+import org.apache.http.client.methods.HttpUriRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Buffers the body of an HTTP response in a buffer leased from the pool
+ * of the client. The response is read in bulk into the whole buffer:
+ * the response streams of JOSS read a byte at a time on partial array reads.
+ * The buffer is leased on the first read and returned to the pool on close.
+ * A response abandoned before its end is aborted rather than closed, JOSS
+ * would read the rest of its body on close.
+ *
+ * This class is not thread-safe
+ */
+class PooledInputStream extends InputStream implements Abortable {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(PooledInputStream.class);
+  /*
+   * Body of the response
+   */
+  private final InputStream in;
+  /*
+   * Pool the buffer is leased from
+   */
+  private final SwiftBufferPool pool;
+  /*
+   * Size of the leased buffer
+   */
+  private final int bufferSize;
+  /*
+   * Leased buffer, null before the first read and after close
+   */
+  private byte[] buffer;
+  /*
+   * Offset of the next unread byte in the buffer
+   */
+  private int position;
+  /*
+   * Number of valid bytes in the buffer
+   */
+  private int count;
+  /*
+   * True once closed
+   */
+  private boolean closed;
+  /*
+   * True once the end of the body was read
+   */
+  private boolean eof;
+
+  /**
+   * Constructor
+   *
+   * @param body body of the response
+   * @param bufferPool pool the buffer is leased from
+   * @param size size of the buffer
+   */
+  PooledInputStream(InputStream body, SwiftBufferPool bufferPool, int size) {
+    in = body;
+    pool = bufferPool;
+    bufferSize = size;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (position >= count && !fill()) {
+      return -1;
+    }
+    return buffer[position++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (position >= count && !fill()) {
+      return -1;
+    }
+    int bytes = Math.min(len, count - position);
+    System.arraycopy(buffer, position, b, off, bytes);
+    position += bytes;
+    return bytes;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    if (n <= 0) {
+      return 0;
+    }
+    long skipped = 0;
+    while (skipped < n && (position < count || fill())) {
+      int bytes = (int) Math.min(n - skipped, count - position);
+      position += bytes;
+      skipped += bytes;
+    }
+    return skipped;
+  }
+
+  @Override
+  public int available() throws IOException {
+    return count - position + (closed ? 0 : in.available());
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      in.close();
+    } finally {
+      if (buffer != null) {
+        pool.release(buffer);
+        buffer = null;
+      }
+      position = 0;
+      count = 0;
+    }
+  }
+
+  @Override
+  public void abort() throws IOException {
+    if (closed) {
+      return;
+    }
+    HttpUriRequest request = eof ? null : getRequest(in);
+    if (request == null) {
+      close();
+      return;
+    }
+    request.abort();
+    try {
+      close();
+    } catch (IOException e) {
+      LOG.trace("Closed aborted response: {}", e.getMessage());
+    }
+  }
+
+  /**
+   * HTTP request of a JOSS response. JOSS doesn't expose it, it's read from
+   * the command of the response
+   *
+   * @param body body of the response
+   * @return request or null if not a JOSS response
+   */
+  private static HttpUriRequest getRequest(InputStream body) {
+    if (!(body instanceof InputStreamWrapper)) {
+      return null;
+    }
+    try {
+      Field commandField = InputStreamWrapper.class.getDeclaredField("command");
+      commandField.setAccessible(true);
+      Object command = commandField.get(body);
+      if (command == null) {
+        return null;
+      }
+      Field requestField = AbstractCommand.class.getDeclaredField("request");
+      requestField.setAccessible(true);
+      return (HttpUriRequest) requestField.get(command);
+    } catch (ReflectiveOperationException e) {
+      LOG.debug("Can't abort the request of a response: {}", e.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * Reads the next bytes of the response into the buffer
+   *
+   * @return false at the end of the response
+   * @throws IOException if failed to read or closed
+   */
+  private boolean fill() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (buffer == null) {
+      buffer = pool.acquire(bufferSize);
+    }
+    position = 0;
+    count = 0;
+    int result;
+    do {
+      result = in.read(buffer);
+    } while (result == 0);
+    if (result < 0) {
+      eof = true;
+      return false;
+    }
+    count = result;
+    return true;
+  }
+}
@@ -19,16 +19,21 @@ package com.ibm.stocator.fs.swift;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URL;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.javaswift.joss.client.factory.AccountConfig;
 import org.javaswift.joss.client.factory.AccountFactory;
@@ -49,12 +54,19 @@ import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapreduce.TaskAttemptID;
 import org.apache.hadoop.fs.FileSystem.Statistics;
+import org.apache.http.client.methods.HttpPut;
 
 import com.ibm.stocator.fs.common.Constants;
 import com.ibm.stocator.fs.common.IStoreClient;
+import com.ibm.stocator.fs.common.PushdownQuery;
 import com.ibm.stocator.fs.common.Utils;
+import com.ibm.stocator.fs.swift.pushdown.PushdownCostModel;
+import com.ibm.stocator.fs.swift.pushdown.PushdownResultCache;
+import com.ibm.stocator.fs.swift.pushdown.RecordOffsetIndex;
 import com.ibm.stocator.fs.swift.pushdown.SwiftPushdownInputStream;
 import com.ibm.stocator.fs.swift.auth.PasswordScopeAccessProvider;
+import com.ibm.stocator.fs.swift.cache.DiskBlockCache;
+import com.ibm.stocator.fs.swift.cache.MemoryBlockCache;
 
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.SerializationConfig;
@@ -70,6 +82,78 @@ import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_CONTAINER_PROPERTY;
 import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUBLIC_PROPERTY;
 import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_BLOCK_SIZE_PROPERTY;
 import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_BLOCK_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PREFETCH_DEPTH_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PREFETCH_DEPTH_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PREFETCH_BUFFER_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PREFETCH_BUFFER_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_THREADS_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_THREADS_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PARALLEL_READS_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PARALLEL_READS_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PARALLEL_CHUNK_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PARALLEL_CHUNK_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_DISK_CACHE_DIR_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_DISK_CACHE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_DISK_CACHE_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_DIR_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_MAX_RESULT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_CACHE_MAX_RESULT_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_FALLBACK_PERIOD_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_FALLBACK_PERIOD_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_COST_MODEL_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_COST_MODEL_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_INDEX_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_INDEX_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_INDEX_WRITE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_PUSHDOWN_INDEX_WRITE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_MEMORY_CACHE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_MEMORY_CACHE_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_CACHE_BLOCK_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_CACHE_BLOCK_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_MAX_CONNECTIONS_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_IDLE_TIMEOUT_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_SOCKET_TIMEOUT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_HTTP_SOCKET_TIMEOUT_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_POLICY_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_POLICY_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_RANDOM_RANGE_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_RANDOM_RANGE_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_VECTORED_READ_MAX_GAP_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_VECTORED_READ_MAX_GAP_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_VECTORED_READ_MAX_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_VECTORED_READ_MAX_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_RETRIES_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_RETRIES_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_RETRY_BACKOFF_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_RETRY_BACKOFF_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_HEDGE_PERCENTILE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_HEDGE_PERCENTILE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_HEDGE_MAX_LOAD_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_HEDGE_MAX_LOAD_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_MIN_THROUGHPUT_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_MIN_THROUGHPUT_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_STALL_WINDOW_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_STALL_WINDOW_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_REWIND_BUFFER_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_REWIND_BUFFER_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_SMALL_OBJECT_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_SMALL_OBJECT_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_BUFFER_POOL_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_BUFFER_POOL_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_RANGE_PIPELINE_DISTANCE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_RANGE_PIPELINE_DISTANCE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_BUFFER_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_READ_BUFFER_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_TAIL_PREFETCH_SIZE_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_TAIL_PREFETCH_SIZE_DEFAULT;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_TAIL_PREFETCH_SUFFIXES_PROPERTY;
+import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_TAIL_PREFETCH_SUFFIXES_DEFAULT;
 // import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_CSV_RECORD_DELIMITER_PROPERTY;
 // import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_MAX_RECORD_SIZE_PROPERTY;
 // import static com.ibm.stocator.fs.swift.SwiftConstants.SWIFT_DYNAMIC_STORLET_DEBUG_PROPERTY;
@@ -95,6 +179,14 @@ public class SwiftAPIClient implements IStoreClient {
    * Time pattern
    */
   private static final String TIME_PATTERN = "EEE, d MMM yyyy hh:mm:ss zzz";
+  /*
+   * Max number of record offset indexes kept by a client
+   */
+  private static final int MAX_RECORD_INDEXES = 1024;
+  /*
+   * Max number of queries evaluated by the client after a storlet failure
+   */
+  private static final int MAX_STORLET_BYPASSES = 1024;
   /*
    * root container
    */
@@ -115,6 +207,139 @@ public class SwiftAPIClient implements IStoreClient {
    * block size
    */
   private long blockSize;
+  /*
+   * number of block ranges read ahead by every input stream
+   */
+  private int prefetchDepth;
+  /*
+   * max bytes buffered in memory for every prefetched block range
+   */
+  private int prefetchBufferSize;
+  /*
+   * number of concurrent range GETs used to read a single block
+   */
+  private int parallelReads;
+  /*
+   * size of every range GET when a block is read in parallel
+   */
+  private int parallelChunkSize;
+  /*
+   * node local cache of object blocks. Null if disabled
+   */
+  private DiskBlockCache diskCache;
+  /*
+   * JVM wide off-heap cache of object blocks. Null if disabled
+   */
+  private MemoryBlockCache memoryCache;
+  /*
+   * size of the blocks kept in the memory and local caches
+   */
+  private int cacheBlockSize;
+  /*
+   * read pattern of the input streams: sequential, random or adaptive
+   */
+  private SwiftReadPolicy.Mode readPolicy;
+  /*
+   * size of the ranges requested by random reads
+   */
+  private int randomRangeSize;
+  /*
+   * largest gap between two ranges of a vectored read fetched by the same GET
+   */
+  private int vectoredReadMaxGap;
+  /*
+   * largest range fetched on behalf of several ranges of a vectored read
+   */
+  private int vectoredReadMaxSize;
+  /*
+   * max number of attempts to resume a read interrupted by a network error
+   */
+  private int readRetries;
+  /*
+   * delay in milliseconds before the first resume attempt, doubled on every attempt
+   */
+  private long readRetryBackoff;
+  /*
+   * decides when range GETs are hedged, shared by the streams of the client
+   */
+  private SwiftHedgePolicy hedgePolicy;
+  /*
+   * min throughput in bytes per second of a read stream, 0 if not monitored
+   */
+  private long readMinThroughput;
+  /*
+   * read time in milliseconds over which the throughput of a read stream is measured
+   */
+  private long readStallWindow;
+  /*
+   * number of recently read bytes kept by a read stream for backward seeks
+   */
+  private int rewindBufferSize;
+  /*
+   * objects up to this size are read entirely with a single GET, 0 if disabled
+   */
+  private int smallObjectSize;
+  /*
+   * read buffers shared by the input streams of the client
+   */
+  private SwiftBufferPool bufferPool;
+  /*
+   * bytes before the end of a range at which the next range is opened, 0 if disabled
+   */
+  private int rangePipelineDistance;
+  /*
+   * size of the pooled buffers the HTTP response bodies are read through
+   */
+  private int readBufferSize;
+  /*
+   * bytes at the end of the object fetched on open, for the matching objects
+   */
+  private int tailPrefetchSize;
+  /*
+   * suffixes of the objects whose tail is fetched on open. "*" matches all objects
+   */
+  private String[] tailPrefetchSuffixes;
+  /*
+   * number of threads used for background reads
+   */
+  private int readThreads;
+  /*
+   * Pool of keep-alive connections used by all the requests
+   */
+  private SwiftConnectionPool connectionPool;
+  /*
+   * Thread pool for background reads. Created on first use
+   */
+  private ExecutorService readExecutor;
+  /*
+   * Node local cache of the pushdown storlet results. Null if disabled
+   */
+  private PushdownResultCache pushdownCache;
+  /*
+   * milliseconds the queries are evaluated by the client after a storlet failure,
+   * 0 if the client never evaluates them
+   */
+  private long pushdownFallbackPeriod;
+  /*
+   * Time until which the queries are evaluated by the client, by object and
+   * query. Null if the client never evaluates them
+   */
+  private Map<String, Long> storletBypasses;
+  /*
+   * Observed costs of the storlet and client evaluations of the queries.
+   * Null if the queries are always evaluated by the storlet
+   */
+  private PushdownCostModel pushdownCostModel;
+  /*
+   * Record offset indexes loaded from the sidecar objects or built, by object
+   * version. A null index is being built or not available.
+   * Null if the pushdown reads don't use sidecar indexes
+   */
+  private Map<String, RecordOffsetIndex> recordIndexes;
+  /*
+   * True if the built record offset indexes are written to sidecar objects
+   */
+  private boolean recordIndexWrite;
   /*
    * The version of the CSVStorlet
    */
@@ -184,6 +409,122 @@ public class SwiftAPIClient implements IStoreClient {
     LOG.warn(SWIFT_BLOCK_SIZE_PROPERTY + " --> " + blockSize);
     LOG.warn(" Dynamic storlet debug --> " +  dynamicStorletDebug);
 
+    prefetchDepth = Integer.valueOf(props.getProperty(SWIFT_PREFETCH_DEPTH_PROPERTY,
+        SWIFT_PREFETCH_DEPTH_DEFAULT)).intValue();
+    prefetchBufferSize = Integer.valueOf(props.getProperty(SWIFT_PREFETCH_BUFFER_SIZE_PROPERTY,
+        SWIFT_PREFETCH_BUFFER_SIZE_DEFAULT)).intValue();
+    parallelReads = Integer.valueOf(props.getProperty(SWIFT_PARALLEL_READS_PROPERTY,
+        SWIFT_PARALLEL_READS_DEFAULT)).intValue();
+    parallelChunkSize = Integer.valueOf(props.getProperty(SWIFT_PARALLEL_CHUNK_SIZE_PROPERTY,
+        SWIFT_PARALLEL_CHUNK_SIZE_DEFAULT)).intValue();
+    readThreads = Integer.valueOf(props.getProperty(SWIFT_READ_THREADS_PROPERTY,
+        SWIFT_READ_THREADS_DEFAULT)).intValue();
+    LOG.debug("Prefetch depth {}, prefetch buffer size {}, read threads {}", prefetchDepth,
+        prefetchBufferSize, readThreads);
+    LOG.debug("Parallel reads {}, parallel chunk size {}", parallelReads, parallelChunkSize);
+    cacheBlockSize = Integer.valueOf(props.getProperty(SWIFT_CACHE_BLOCK_SIZE_PROPERTY,
+        SWIFT_CACHE_BLOCK_SIZE_DEFAULT)).intValue();
+    long memoryCacheSize = Long.valueOf(props.getProperty(SWIFT_MEMORY_CACHE_SIZE_PROPERTY,
+        SWIFT_MEMORY_CACHE_SIZE_DEFAULT)).longValue();
+    if (memoryCacheSize > 0) {
+      memoryCache = MemoryBlockCache.getInstance(memoryCacheSize);
+      LOG.debug("Memory cache size {}, block size {}", memoryCacheSize, cacheBlockSize);
+    }
+    String policy = props.getProperty(SWIFT_READ_POLICY_PROPERTY, SWIFT_READ_POLICY_DEFAULT);
+    try {
+      readPolicy = SwiftReadPolicy.Mode.fromString(policy);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unknown read policy " + policy + " in "
+          + SWIFT_READ_POLICY_PROPERTY);
+    }
+    randomRangeSize = Integer.valueOf(props.getProperty(SWIFT_RANDOM_RANGE_SIZE_PROPERTY,
+        SWIFT_RANDOM_RANGE_SIZE_DEFAULT)).intValue();
+    LOG.debug("Read policy {}, random range size {}", readPolicy, randomRangeSize);
+    vectoredReadMaxGap = Integer.valueOf(props.getProperty(
+        SWIFT_VECTORED_READ_MAX_GAP_PROPERTY, SWIFT_VECTORED_READ_MAX_GAP_DEFAULT)).intValue();
+    vectoredReadMaxSize = Integer.valueOf(props.getProperty(
+        SWIFT_VECTORED_READ_MAX_SIZE_PROPERTY, SWIFT_VECTORED_READ_MAX_SIZE_DEFAULT)).intValue();
+    readRetries = Integer.valueOf(props.getProperty(SWIFT_READ_RETRIES_PROPERTY,
+        SWIFT_READ_RETRIES_DEFAULT)).intValue();
+    readRetryBackoff = Long.valueOf(props.getProperty(SWIFT_READ_RETRY_BACKOFF_PROPERTY,
+        SWIFT_READ_RETRY_BACKOFF_DEFAULT)).longValue();
+    int hedgePercentile = Integer.valueOf(props.getProperty(
+        SWIFT_READ_HEDGE_PERCENTILE_PROPERTY, SWIFT_READ_HEDGE_PERCENTILE_DEFAULT)).intValue();
+    int hedgeMaxLoad = Integer.valueOf(props.getProperty(SWIFT_READ_HEDGE_MAX_LOAD_PROPERTY,
+        SWIFT_READ_HEDGE_MAX_LOAD_DEFAULT)).intValue();
+    hedgePolicy = new SwiftHedgePolicy(hedgePercentile, hedgeMaxLoad);
+    readMinThroughput = Long.valueOf(props.getProperty(SWIFT_READ_MIN_THROUGHPUT_PROPERTY,
+        SWIFT_READ_MIN_THROUGHPUT_DEFAULT)).longValue();
+    readStallWindow = Long.valueOf(props.getProperty(SWIFT_READ_STALL_WINDOW_PROPERTY,
+        SWIFT_READ_STALL_WINDOW_DEFAULT)).longValue();
+    rewindBufferSize = Integer.valueOf(props.getProperty(SWIFT_REWIND_BUFFER_SIZE_PROPERTY,
+        SWIFT_REWIND_BUFFER_SIZE_DEFAULT)).intValue();
+    smallObjectSize = Integer.valueOf(props.getProperty(SWIFT_SMALL_OBJECT_SIZE_PROPERTY,
+        SWIFT_SMALL_OBJECT_SIZE_DEFAULT)).intValue();
+    bufferPool = new SwiftBufferPool(Long.valueOf(props.getProperty(
+        SWIFT_BUFFER_POOL_SIZE_PROPERTY, SWIFT_BUFFER_POOL_SIZE_DEFAULT)).longValue());
+    rangePipelineDistance = Integer.valueOf(props.getProperty(
+        SWIFT_RANGE_PIPELINE_DISTANCE_PROPERTY, SWIFT_RANGE_PIPELINE_DISTANCE_DEFAULT)).intValue();
+    readBufferSize = Integer.valueOf(props.getProperty(SWIFT_READ_BUFFER_SIZE_PROPERTY,
+        SWIFT_READ_BUFFER_SIZE_DEFAULT)).intValue();
+    LOG.debug("Hedge percentile {}, max hedge load {}%", hedgePercentile, hedgeMaxLoad);
+    tailPrefetchSize = Integer.valueOf(props.getProperty(SWIFT_TAIL_PREFETCH_SIZE_PROPERTY,
+        SWIFT_TAIL_PREFETCH_SIZE_DEFAULT)).intValue();
+    tailPrefetchSuffixes = props.getProperty(SWIFT_TAIL_PREFETCH_SUFFIXES_PROPERTY,
+        SWIFT_TAIL_PREFETCH_SUFFIXES_DEFAULT).split(",");
+    LOG.debug("Tail prefetch size {} for suffixes {}", tailPrefetchSize,
+        Arrays.toString(tailPrefetchSuffixes));
+    String diskCacheDir = props.getProperty(SWIFT_DISK_CACHE_DIR_PROPERTY);
+    if (diskCacheDir != null) {
+      long diskCacheSize = Long.valueOf(props.getProperty(SWIFT_DISK_CACHE_SIZE_PROPERTY,
+          SWIFT_DISK_CACHE_SIZE_DEFAULT)).longValue();
+      diskCache = DiskBlockCache.getInstance(diskCacheDir, diskCacheSize);
+      LOG.debug("Disk cache {}, size {}, block size {}", diskCacheDir, diskCacheSize,
+          cacheBlockSize);
+    }
+    pushdownFallbackPeriod = Long.valueOf(props.getProperty(
+        SWIFT_PUSHDOWN_FALLBACK_PERIOD_PROPERTY, SWIFT_PUSHDOWN_FALLBACK_PERIOD_DEFAULT))
+        .longValue();
+    if (pushdownFallbackPeriod > 0) {
+      storletBypasses = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+          return size() > MAX_STORLET_BYPASSES;
+        }
+      };
+    }
+    if ("true".equals(props.getProperty(SWIFT_PUSHDOWN_COST_MODEL_PROPERTY,
+        SWIFT_PUSHDOWN_COST_MODEL_DEFAULT))) {
+      pushdownCostModel = new PushdownCostModel();
+    }
+    if ("true".equals(props.getProperty(SWIFT_PUSHDOWN_INDEX_PROPERTY,
+        SWIFT_PUSHDOWN_INDEX_DEFAULT))) {
+      recordIndexes = new LinkedHashMap<String, RecordOffsetIndex>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, RecordOffsetIndex> eldest) {
+          return size() > MAX_RECORD_INDEXES;
+        }
+      };
+      recordIndexWrite = "true".equals(props.getProperty(SWIFT_PUSHDOWN_INDEX_WRITE_PROPERTY,
+          SWIFT_PUSHDOWN_INDEX_WRITE_DEFAULT));
+    }
+    String pushdownCacheDir = props.getProperty(SWIFT_PUSHDOWN_CACHE_DIR_PROPERTY);
+    if (pushdownCacheDir != null) {
+      long pushdownCacheSize = Long.valueOf(props.getProperty(
+          SWIFT_PUSHDOWN_CACHE_SIZE_PROPERTY, SWIFT_PUSHDOWN_CACHE_SIZE_DEFAULT)).longValue();
+      int maxResultSize = Integer.valueOf(props.getProperty(
+          SWIFT_PUSHDOWN_CACHE_MAX_RESULT_PROPERTY,
+          SWIFT_PUSHDOWN_CACHE_MAX_RESULT_DEFAULT)).intValue();
+      pushdownCache = new PushdownResultCache(DiskBlockCache.getInstance(pushdownCacheDir,
+          pushdownCacheSize), maxResultSize);
+      LOG.debug("Pushdown result cache {}, size {}, max result size {}", pushdownCacheDir,
+          pushdownCacheSize, maxResultSize);
+    }
+
     // Following are needed for the invocation of the CSV SQL pushdown storlet:
     theRecordDelimiter = DEFAULT_RECORD_DELIMITER;
     theMaxRecordSize = DEFAULT_MAX_RECORD_SIZE;
@@ -223,7 +564,19 @@ public class SwiftAPIClient implements IStoreClient {
     }
     ObjectMapper mapper = new ObjectMapper();
     mapper.configure(SerializationConfig.Feature.WRAP_ROOT_VALUE, true);
-    mAccount = new AccountFactory(config).createAccount();
+    int maxConnections = Integer.valueOf(props.getProperty(SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY,
+        SWIFT_HTTP_MAX_CONNECTIONS_DEFAULT)).intValue();
+    int maxConnectionsPerRoute = Integer.valueOf(props.getProperty(
+        SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY,
+        SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_DEFAULT)).intValue();
+    long idleTimeout = Long.valueOf(props.getProperty(SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY,
+        SWIFT_HTTP_IDLE_TIMEOUT_DEFAULT)).longValue();
+    int socketTimeout = Integer.valueOf(props.getProperty(SWIFT_HTTP_SOCKET_TIMEOUT_PROPERTY,
+        SWIFT_HTTP_SOCKET_TIMEOUT_DEFAULT)).intValue();
+    connectionPool = new SwiftConnectionPool(maxConnections, maxConnectionsPerRoute,
+        idleTimeout, socketTimeout);
+    mAccount = new AccountFactory(config).setHttpClient(connectionPool.getHttpClient())
+        .createAccount();
     mAccess = mAccount.authenticate();
     if (preferredRegion != null) {
       mAccess.setPreferredRegion(preferredRegion);
@@ -250,6 +603,251 @@ public class SwiftAPIClient implements IStoreClient {
     return blockSize;
   }
 
+  public int getPrefetchDepth() {
+    return prefetchDepth;
+  }
+
+  public int getPrefetchBufferSize() {
+    return prefetchBufferSize;
+  }
+
+  public int getParallelReads() {
+    return parallelReads;
+  }
+
+  public int getParallelChunkSize() {
+    return parallelChunkSize;
+  }
+
+  /**
+   * @return node local block cache or null if disabled
+   */
+  public DiskBlockCache getDiskCache() {
+    return diskCache;
+  }
+
+  /**
+   * @return JVM wide memory block cache or null if disabled
+   */
+  public MemoryBlockCache getMemoryCache() {
+    return memoryCache;
+  }
+
+  /**
+   * @return node local cache of the pushdown storlet results or null if disabled
+   */
+  public PushdownResultCache getPushdownCache() {
+    return pushdownCache;
+  }
+
+  public long getPushdownFallbackPeriod() {
+    return pushdownFallbackPeriod;
+  }
+
+  /**
+   * @return observed costs of the storlet and client evaluations of the
+   *         queries, null if the queries are always evaluated by the storlet
+   */
+  public PushdownCostModel getPushdownCostModel() {
+    return pushdownCostModel;
+  }
+
+  /**
+   * @return true if the pushdown reads use sidecar record offset indexes
+   */
+  public boolean isPushdownIndexEnabled() {
+    return recordIndexes != null;
+  }
+
+  /**
+   * @return true if the record offset indexes built by the pushdown reads
+   *         are written to sidecar objects
+   */
+  public boolean isPushdownIndexWriteEnabled() {
+    return recordIndexWrite;
+  }
+
+  /**
+   * @param key object and version of the index
+   * @return record offset index loaded by a stream of this client, null if none
+   */
+  public RecordOffsetIndex getRecordOffsetIndex(String key) {
+    synchronized (recordIndexes) {
+      return recordIndexes.get(key);
+    }
+  }
+
+  /**
+   * Registers the load of a record offset index. A single stream of this
+   * client loads an index, the others read without it until it is put
+   *
+   * @param key object and version of the index
+   * @return true if the caller loads the index, false if it is loaded, being
+   *         loaded or not available
+   */
+  public boolean startRecordOffsetIndex(String key) {
+    synchronized (recordIndexes) {
+      if (recordIndexes.containsKey(key)) {
+        return false;
+      }
+      recordIndexes.put(key, null);
+      return true;
+    }
+  }
+
+  /**
+   * Keeps a record offset index for the streams of this client
+   *
+   * @param key object and version of the index
+   * @param index record offset index
+   */
+  public void putRecordOffsetIndex(String key, RecordOffsetIndex index) {
+    synchronized (recordIndexes) {
+      recordIndexes.put(key, index);
+    }
+  }
+
+  /**
+   * Records a failed storlet invocation. The query is evaluated by the client
+   * on the object for the fallback period, without invoking the storlet. The
+   * other queries and objects still invoke the storlet
+   *
+   * @param key object and query of the failed invocation
+   */
+  public void storletFailed(String key) {
+    if (storletBypasses == null) {
+      return;
+    }
+    synchronized (storletBypasses) {
+      storletBypasses.put(key, Long.valueOf(System.currentTimeMillis()
+          + pushdownFallbackPeriod));
+    }
+  }
+
+  /**
+   * @param key object and query of a storlet invocation
+   * @return true if the query is evaluated by the client on the object after
+   *         a recent storlet failure
+   */
+  public boolean isStorletBypassed(String key) {
+    if (storletBypasses == null) {
+      return false;
+    }
+    synchronized (storletBypasses) {
+      Long end = storletBypasses.get(key);
+      if (end != null && System.currentTimeMillis() >= end.longValue()) {
+        storletBypasses.remove(key);
+        return false;
+      }
+      return end != null;
+    }
+  }
+
+  public int getCacheBlockSize() {
+    return cacheBlockSize;
+  }
+
+  public SwiftReadPolicy.Mode getReadPolicy() {
+    return readPolicy;
+  }
+
+  public int getRandomRangeSize() {
+    return randomRangeSize;
+  }
+
+  public int getVectoredReadMaxGap() {
+    return vectoredReadMaxGap;
+  }
+
+  public int getVectoredReadMaxSize() {
+    return vectoredReadMaxSize;
+  }
+
+  public int getReadRetries() {
+    return readRetries;
+  }
+
+  public long getReadRetryBackoff() {
+    return readRetryBackoff;
+  }
+
+  public SwiftHedgePolicy getHedgePolicy() {
+    return hedgePolicy;
+  }
+
+  public long getReadMinThroughput() {
+    return readMinThroughput;
+  }
+
+  public long getReadStallWindow() {
+    return readStallWindow;
+  }
+
+  public int getRewindBufferSize() {
+    return rewindBufferSize;
+  }
+
+  public int getSmallObjectSize() {
+    return smallObjectSize;
+  }
+
+  public SwiftBufferPool getBufferPool() {
+    return bufferPool;
+  }
+
+  public int getRangePipelineDistance() {
+    return rangePipelineDistance;
+  }
+
+  public int getReadBufferSize() {
+    return readBufferSize;
+  }
+
+  public SwiftConnectionPool getConnectionPool() {
+    return connectionPool;
+  }
+
+  /**
+   * Number of bytes at the end of an object to fetch when it is opened.
+   * Columnar formats keep their footer there, read right after the open
+   *
+   * @param objectName name of the object
+   * @return size of the tail to fetch, 0 if the tail is not fetched on open
+   */
+  public int getTailPrefetchSize(String objectName) {
+    if (tailPrefetchSize > 0) {
+      for (String suffix : tailPrefetchSuffixes) {
+        String trimmed = suffix.trim();
+        if (trimmed.equals("*") || (!trimmed.isEmpty() && objectName.endsWith(trimmed))) {
+          return tailPrefetchSize;
+        }
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * Thread pool shared by all the input streams of this client for
+   * the reads executed in background.
+   * Threads are daemons, so an idle pool never blocks the JVM exit
+   *
+   * @return executor for background reads
+   */
+  public synchronized ExecutorService getReadExecutor() {
+    if (readExecutor == null) {
+      final AtomicInteger threadCount = new AtomicInteger();
+      readExecutor = Executors.newFixedThreadPool(readThreads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "swift-read-" + threadCount.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      });
+    }
+    return readExecutor;
+  }
+
   public int getDynamicStorletDebug() {
     return dynamicStorletDebug;
   }
@@ -361,10 +959,22 @@ public class SwiftAPIClient implements IStoreClient {
   }
 
   public FSDataInputStream getObject(String hostName, Path path) throws IOException {
+    return getObject(hostName, path, null);
+  }
+
+  @Override
+  public FSDataInputStream getObject(String hostName, Path path,
+      FileStatus status) throws IOException {
+    return getObject(hostName, path, status, null);
+  }
+
+  @Override
+  public FSDataInputStream getObject(String hostName, Path path,
+      FileStatus status, PushdownQuery query) throws IOException {
     // SwiftInputStream.printStackTrace(" #### getOject hostname = " + hostName + " path= " + path);
     LOG.debug("Get object: {}", path);
     try {
-      SwiftInputStream sis = new SwiftPushdownInputStream(this, hostName, path);
+      SwiftInputStream sis = new SwiftPushdownInputStream(this, hostName, path, status, query);
       return new FSDataInputStream(sis);
     } catch (IOException e) {
       LOG.error(e.getMessage());
@@ -500,18 +1110,16 @@ public class SwiftAPIClient implements IStoreClient {
     URL url = new URL(getAccessURL() + "/" + objName);
     LOG.debug("PUT {}. Content-Type : {}", url.toString(), contentType);
     try {
-      HttpURLConnection httpCon = (HttpURLConnection) url.openConnection();
-      httpCon.setDoOutput(true);
-      httpCon.setRequestMethod("PUT");
-      httpCon.addRequestProperty("X-Auth-Token", getAuthToken());
-      httpCon.addRequestProperty("Content-Type", contentType);
+      HttpPut request = new HttpPut(url.toString());
+      request.addHeader("X-Auth-Token", getAuthToken());
+      request.addHeader("Content-Type", contentType);
       if (metadata != null && !metadata.isEmpty()) {
         for (Map.Entry<String, String> entry : metadata.entrySet()) {
-          httpCon.addRequestProperty("X-Object-Meta-" + entry.getKey(), entry.getValue());
+          request.addHeader("X-Object-Meta-" + entry.getKey(), entry.getValue());
         }
       }
-      return new FSDataOutputStream(new SwiftOutputStream(httpCon),
-          statistics);
+      return new FSDataOutputStream(new SwiftOutputStream(connectionPool.getHttpClient(),
+          request, connectionPool.getUploadExecutor()), statistics);
     } catch (IOException e) {
       LOG.error(e.getMessage());
       throw e;
@@ -0,0 +1,142 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pool of read buffers shared by the input streams of a client.
+ * Buffers are sized in powers of two, a released buffer is reused for
+ * the next request of its size class. The total size of the idle buffers
+ * is bounded, a buffer released beyond the bound is left to the GC.
+ *
+ * This class is thread-safe
+ */
+public class SwiftBufferPool {
+  /*
+   * Size of the smallest buffers
+   */
+  public static final int MIN_BUFFER_SIZE = 4096;
+
+  /*
+   * Max total size of the idle buffers
+   */
+  private final long maxSize;
+  /*
+   * Idle buffers per size
+   */
+  private final Map<Integer, ArrayDeque<byte[]>> idle = new HashMap<Integer,
+      ArrayDeque<byte[]>>();
+  /*
+   * Total size of the idle buffers
+   */
+  private long idleSize;
+  /*
+   * Number of leases served by an idle buffer
+   */
+  private long hits;
+  /*
+   * Number of leases that allocated a buffer
+   */
+  private long misses;
+
+  /**
+   * Constructor
+   *
+   * @param size max total size of the idle buffers, 0 to disable pooling
+   */
+  public SwiftBufferPool(long size) {
+    maxSize = size;
+  }
+
+  /**
+   * Leases a buffer, to be released once not used
+   *
+   * @param size min size of the buffer
+   * @return idle or new buffer, possibly larger than requested
+   */
+  public byte[] acquire(int size) {
+    int bufferSize = sizeClass(size);
+    synchronized (this) {
+      ArrayDeque<byte[]> buffers = idle.get(bufferSize);
+      if (buffers != null && !buffers.isEmpty()) {
+        idleSize -= bufferSize;
+        hits++;
+        return buffers.pop();
+      }
+      misses++;
+    }
+    return new byte[bufferSize];
+  }
+
+  /**
+   * Returns a leased buffer to the pool. The buffer must not be used
+   * after its release
+   *
+   * @param buffer buffer leased from this pool
+   */
+  public synchronized void release(byte[] buffer) {
+    if (idleSize + buffer.length > maxSize || buffer.length != sizeClass(buffer.length)) {
+      return;
+    }
+    ArrayDeque<byte[]> buffers = idle.get(buffer.length);
+    if (buffers == null) {
+      buffers = new ArrayDeque<byte[]>();
+      idle.put(buffer.length, buffers);
+    }
+    buffers.push(buffer);
+    idleSize += buffer.length;
+  }
+
+  /**
+   * @return total size of the idle buffers
+   */
+  public synchronized long getIdleSize() {
+    return idleSize;
+  }
+
+  /**
+   * @return number of leases served by an idle buffer
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of leases that allocated a buffer
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Size of the buffers that serve a request
+   *
+   * @param size requested size
+   * @return smallest power of two not lower than the size and the min size
+   */
+  private static int sizeClass(int size) {
+    if (size <= MIN_BUFFER_SIZE) {
+      return MIN_BUFFER_SIZE;
+    }
+    int bufferSize = Integer.highestOneBit(size);
+    return bufferSize == size ? size : bufferSize << 1;
+  }
+}
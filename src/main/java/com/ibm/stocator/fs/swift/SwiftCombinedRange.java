@@ -0,0 +1,106 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Range of an object fetched by a single GET on behalf of the nearby
+ * ranges of a vectored read. The bytes between the ranges are read and
+ * discarded, which is cheaper than a request when the gap is small.
+ */
+public class SwiftCombinedRange {
+  /*
+   * Offset of the first byte
+   */
+  private final long start;
+  /*
+   * Offset following the last byte
+   */
+  private long end;
+  /*
+   * Ranges served by this one
+   */
+  private final List<SwiftFileRange> children = new ArrayList<SwiftFileRange>();
+
+  private SwiftCombinedRange(SwiftFileRange first) {
+    start = first.getOffset();
+    end = first.getOffset() + first.getLength();
+    children.add(first);
+  }
+
+  /**
+   * Merges the ranges into combined ranges. Ranges are merged if the gap
+   * between them is at most maxGap bytes, and the combined range doesn't
+   * exceed maxSize bytes. Overlapping ranges are always merged
+   *
+   * @param ranges ranges of the vectored read
+   * @param maxGap largest gap between two merged ranges
+   * @param maxSize largest combined range, unless a single range is larger
+   * @return combined ranges, ordered by offset
+   */
+  public static List<SwiftCombinedRange> coalesce(List<? extends SwiftFileRange> ranges,
+      int maxGap, int maxSize) {
+    List<SwiftFileRange> sorted = new ArrayList<SwiftFileRange>(ranges);
+    Collections.sort(sorted, new Comparator<SwiftFileRange>() {
+      @Override
+      public int compare(SwiftFileRange r1, SwiftFileRange r2) {
+        return Long.compare(r1.getOffset(), r2.getOffset());
+      }
+    });
+    List<SwiftCombinedRange> result = new ArrayList<SwiftCombinedRange>();
+    SwiftCombinedRange current = null;
+    for (SwiftFileRange range : sorted) {
+      if (current == null || !current.merge(range, maxGap, maxSize)) {
+        current = new SwiftCombinedRange(range);
+        result.add(current);
+      }
+    }
+    return result;
+  }
+
+  private boolean merge(SwiftFileRange range, int maxGap, int maxSize) {
+    long rangeEnd = range.getOffset() + range.getLength();
+    boolean overlaps = range.getOffset() < end;
+    if (!overlaps && (range.getOffset() - end > maxGap
+        || Math.max(end, rangeEnd) - start > maxSize)) {
+      return false;
+    }
+    end = Math.max(end, rangeEnd);
+    children.add(range);
+    return true;
+  }
+
+  public long getStart() {
+    return start;
+  }
+
+  /**
+   * @return offset following the last byte
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  public List<SwiftFileRange> getChildren() {
+    return children;
+  }
+}
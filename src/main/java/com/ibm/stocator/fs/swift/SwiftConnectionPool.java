@@ -0,0 +1,167 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.HttpContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of keep-alive HTTP connections shared by all the requests of a
+ * client: the JOSS requests (HEAD, GET, listings, deletes) and the object
+ * uploads. Connections are kept alive as long as the server allows it,
+ * bounded by the idle timeout, and idle connections are closed in background.
+ *
+ * This class is thread-safe
+ */
+public class SwiftConnectionPool {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(SwiftConnectionPool.class);
+  /*
+   * Pool of the connections
+   */
+  private final PoolingHttpClientConnectionManager connectionManager;
+  /*
+   * HTTP client using the pool
+   */
+  private final CloseableHttpClient httpClient;
+  /*
+   * Closes the idle and expired connections
+   */
+  private final ScheduledExecutorService evictor;
+  /*
+   * Executes the streamed uploads
+   */
+  private final ExecutorService uploadExecutor;
+  /*
+   * Executes the hedged range requests
+   */
+  private final ExecutorService hedgeExecutor;
+
+  /**
+   * Constructor
+   *
+   * @param maxConnections max number of connections
+   * @param maxConnectionsPerRoute max number of connections to a single host
+   * @param idleTimeout time in milliseconds after which an idle connection is closed
+   * @param socketTimeout time in milliseconds after which a blocked read fails, 0 for no timeout
+   */
+  public SwiftConnectionPool(int maxConnections, int maxConnectionsPerRoute,
+      final long idleTimeout, int socketTimeout) {
+    connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(maxConnections);
+    connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+    httpClient = HttpClientBuilder.create()
+        .setConnectionManager(connectionManager)
+        .setDefaultRequestConfig(RequestConfig.custom().setSocketTimeout(socketTimeout).build())
+        .setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy() {
+          @Override
+          public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+            long duration = super.getKeepAliveDuration(response, context);
+            // the server didn't set a keep-alive timeout when negative
+            return duration < 0 ? idleTimeout : Math.min(duration, idleTimeout);
+          }
+        }).build();
+    evictor = Executors.newSingleThreadScheduledExecutor(daemonFactory("swift-http-evictor"));
+    evictor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        connectionManager.closeExpiredConnections();
+        connectionManager.closeIdleConnections(idleTimeout, TimeUnit.MILLISECONDS);
+      }
+    }, idleTimeout, idleTimeout, TimeUnit.MILLISECONDS);
+    uploadExecutor = boundedPool(maxConnectionsPerRoute, "swift-upload");
+    hedgeExecutor = boundedPool(maxConnectionsPerRoute, "swift-hedge");
+    LOG.debug("HTTP connection pool: max connections {}, per route {}, idle timeout {}, "
+        + "socket timeout {}", maxConnections, maxConnectionsPerRoute, idleTimeout, socketTimeout);
+  }
+
+  /**
+   * @return HTTP client using the pool
+   */
+  public HttpClient getHttpClient() {
+    return httpClient;
+  }
+
+  /**
+   * Thread pool that sends the uploads. Every upload holds a thread until
+   * its output stream is closed. The threads are bounded by the connections
+   * to a host, the uploads beyond them wait for a thread as they would wait
+   * for a connection
+   *
+   * @return executor for the uploads
+   */
+  public ExecutorService getUploadExecutor() {
+    return uploadExecutor;
+  }
+
+  /**
+   * Thread pool that sends the hedged range requests. Not shared with the
+   * read-ahead, so a request is never queued behind the ones it hedges.
+   * The threads are bounded by the connections to a host
+   *
+   * @return executor for the hedged requests
+   */
+  public ExecutorService getHedgeExecutor() {
+    return hedgeExecutor;
+  }
+
+  /**
+   * Pool of at most the given number of threads, the tasks beyond them are
+   * queued. Idle threads end after a minute
+   */
+  private static ExecutorService boundedPool(int threads, String prefix) {
+    ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(), daemonFactory(prefix));
+    pool.allowCoreThreadTimeOut(true);
+    return pool;
+  }
+
+  /**
+   * Threads are daemons, so an idle pool never blocks the JVM exit
+   */
+  private static ThreadFactory daemonFactory(final String prefix) {
+    final AtomicInteger threadCount = new AtomicInteger();
+    return new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, prefix + "-" + threadCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    };
+  }
+}
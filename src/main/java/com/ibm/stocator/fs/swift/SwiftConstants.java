@@ -63,5 +63,182 @@ public class SwiftConstants {
   public static final String FMODE_AUTOMATIC_DELETE_PROPERTY = Constants.FS_SWIFT
       + FMODE_DELETE_TEMP_DATA;
 
+  public static final String PREFETCH_DEPTH = ".prefetch.depth";
+  public static final String SWIFT_PREFETCH_DEPTH_PROPERTY = Constants.FS_SWIFT + PREFETCH_DEPTH;
+
+  public static final String PREFETCH_BUFFER_SIZE = ".prefetch.buffer.size";
+  public static final String SWIFT_PREFETCH_BUFFER_SIZE_PROPERTY = Constants.FS_SWIFT
+      + PREFETCH_BUFFER_SIZE;
+
+  public static final String READ_THREADS = ".read.threads";
+  public static final String SWIFT_READ_THREADS_PROPERTY = Constants.FS_SWIFT + READ_THREADS;
+
+  public static final String PARALLEL_READS = ".parallel.reads";
+  public static final String SWIFT_PARALLEL_READS_PROPERTY = Constants.FS_SWIFT + PARALLEL_READS;
+
+  public static final String PARALLEL_CHUNK_SIZE = ".parallel.chunk.size";
+  public static final String SWIFT_PARALLEL_CHUNK_SIZE_PROPERTY = Constants.FS_SWIFT
+      + PARALLEL_CHUNK_SIZE;
+
+  public static final String DISK_CACHE_DIR = ".disk.cache.dir";
+  public static final String SWIFT_DISK_CACHE_DIR_PROPERTY = Constants.FS_SWIFT + DISK_CACHE_DIR;
+
+  public static final String DISK_CACHE_SIZE = ".disk.cache.size";
+  public static final String SWIFT_DISK_CACHE_SIZE_PROPERTY = Constants.FS_SWIFT
+      + DISK_CACHE_SIZE;
+
+  public static final String MEMORY_CACHE_SIZE = ".memory.cache.size";
+  public static final String SWIFT_MEMORY_CACHE_SIZE_PROPERTY = Constants.FS_SWIFT
+      + MEMORY_CACHE_SIZE;
+
+  public static final String HTTP_MAX_CONNECTIONS = ".http.max.connections";
+  public static final String SWIFT_HTTP_MAX_CONNECTIONS_PROPERTY = Constants.FS_SWIFT
+      + HTTP_MAX_CONNECTIONS;
+
+  public static final String HTTP_MAX_CONNECTIONS_PER_ROUTE = ".http.max.connections.per.route";
+  public static final String SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY = Constants.FS_SWIFT
+      + HTTP_MAX_CONNECTIONS_PER_ROUTE;
+
+  public static final String HTTP_IDLE_TIMEOUT = ".http.idle.timeout";
+  public static final String SWIFT_HTTP_IDLE_TIMEOUT_PROPERTY = Constants.FS_SWIFT
+      + HTTP_IDLE_TIMEOUT;
+
+  public static final String HTTP_SOCKET_TIMEOUT = ".http.socket.timeout";
+  public static final String SWIFT_HTTP_SOCKET_TIMEOUT_PROPERTY = Constants.FS_SWIFT
+      + HTTP_SOCKET_TIMEOUT;
+
+  public static final String READ_POLICY = ".read.policy";
+  public static final String SWIFT_READ_POLICY_PROPERTY = Constants.FS_SWIFT + READ_POLICY;
+
+  public static final String RANDOM_RANGE_SIZE = ".random.range.size";
+  public static final String SWIFT_RANDOM_RANGE_SIZE_PROPERTY = Constants.FS_SWIFT
+      + RANDOM_RANGE_SIZE;
+
+  public static final String REWIND_BUFFER_SIZE = ".rewind.buffer.size";
+  public static final String SWIFT_REWIND_BUFFER_SIZE_PROPERTY = Constants.FS_SWIFT
+      + REWIND_BUFFER_SIZE;
+
+  public static final String SMALL_OBJECT_SIZE = ".small.object.size";
+  public static final String SWIFT_SMALL_OBJECT_SIZE_PROPERTY = Constants.FS_SWIFT
+      + SMALL_OBJECT_SIZE;
+
+  public static final String BUFFER_POOL_SIZE = ".buffer.pool.size";
+  public static final String SWIFT_BUFFER_POOL_SIZE_PROPERTY = Constants.FS_SWIFT
+      + BUFFER_POOL_SIZE;
+
+  public static final String RANGE_PIPELINE_DISTANCE = ".range.pipeline.distance";
+  public static final String SWIFT_RANGE_PIPELINE_DISTANCE_PROPERTY = Constants.FS_SWIFT
+      + RANGE_PIPELINE_DISTANCE;
+
+  public static final String READ_BUFFER_SIZE = ".read.buffer.size";
+  public static final String SWIFT_READ_BUFFER_SIZE_PROPERTY = Constants.FS_SWIFT
+      + READ_BUFFER_SIZE;
+
+  public static final String VECTORED_READ_MAX_GAP = ".vectored.read.max.gap";
+  public static final String SWIFT_VECTORED_READ_MAX_GAP_PROPERTY = Constants.FS_SWIFT
+      + VECTORED_READ_MAX_GAP;
+
+  public static final String VECTORED_READ_MAX_SIZE = ".vectored.read.max.size";
+  public static final String SWIFT_VECTORED_READ_MAX_SIZE_PROPERTY = Constants.FS_SWIFT
+      + VECTORED_READ_MAX_SIZE;
+
+  public static final String READ_RETRIES = ".read.retries";
+  public static final String SWIFT_READ_RETRIES_PROPERTY = Constants.FS_SWIFT + READ_RETRIES;
+
+  public static final String READ_RETRY_BACKOFF = ".read.retry.backoff";
+  public static final String SWIFT_READ_RETRY_BACKOFF_PROPERTY = Constants.FS_SWIFT
+      + READ_RETRY_BACKOFF;
+
+  public static final String READ_HEDGE_PERCENTILE = ".read.hedge.percentile";
+  public static final String SWIFT_READ_HEDGE_PERCENTILE_PROPERTY = Constants.FS_SWIFT
+      + READ_HEDGE_PERCENTILE;
+
+  public static final String READ_HEDGE_MAX_LOAD = ".read.hedge.max.load";
+  public static final String SWIFT_READ_HEDGE_MAX_LOAD_PROPERTY = Constants.FS_SWIFT
+      + READ_HEDGE_MAX_LOAD;
+
+  public static final String READ_MIN_THROUGHPUT = ".read.min.throughput";
+  public static final String SWIFT_READ_MIN_THROUGHPUT_PROPERTY = Constants.FS_SWIFT
+      + READ_MIN_THROUGHPUT;
+
+  public static final String READ_STALL_WINDOW = ".read.stall.window";
+  public static final String SWIFT_READ_STALL_WINDOW_PROPERTY = Constants.FS_SWIFT
+      + READ_STALL_WINDOW;
+
+  public static final String TAIL_PREFETCH_SIZE = ".tail.prefetch.size";
+  public static final String SWIFT_TAIL_PREFETCH_SIZE_PROPERTY = Constants.FS_SWIFT
+      + TAIL_PREFETCH_SIZE;
+
+  public static final String TAIL_PREFETCH_SUFFIXES = ".tail.prefetch.suffixes";
+  public static final String SWIFT_TAIL_PREFETCH_SUFFIXES_PROPERTY = Constants.FS_SWIFT
+      + TAIL_PREFETCH_SUFFIXES;
+
+  public static final String CACHE_BLOCK_SIZE = ".cache.block.size";
+  public static final String SWIFT_CACHE_BLOCK_SIZE_PROPERTY = Constants.FS_SWIFT
+      + CACHE_BLOCK_SIZE;
+
+  public static final String PUSHDOWN_CACHE_DIR = ".pushdown.cache.dir";
+  public static final String SWIFT_PUSHDOWN_CACHE_DIR_PROPERTY = Constants.FS_SWIFT
+      + PUSHDOWN_CACHE_DIR;
+
+  public static final String PUSHDOWN_CACHE_SIZE = ".pushdown.cache.size";
+  public static final String SWIFT_PUSHDOWN_CACHE_SIZE_PROPERTY = Constants.FS_SWIFT
+      + PUSHDOWN_CACHE_SIZE;
+
+  public static final String PUSHDOWN_CACHE_MAX_RESULT = ".pushdown.cache.max.result";
+  public static final String SWIFT_PUSHDOWN_CACHE_MAX_RESULT_PROPERTY = Constants.FS_SWIFT
+      + PUSHDOWN_CACHE_MAX_RESULT;
+
+  public static final String PUSHDOWN_FALLBACK_PERIOD = ".pushdown.fallback.period";
+  public static final String SWIFT_PUSHDOWN_FALLBACK_PERIOD_PROPERTY = Constants.FS_SWIFT
+      + PUSHDOWN_FALLBACK_PERIOD;
+
+  public static final String PUSHDOWN_COST_MODEL = ".pushdown.cost.model";
+  public static final String SWIFT_PUSHDOWN_COST_MODEL_PROPERTY = Constants.FS_SWIFT
+      + PUSHDOWN_COST_MODEL;
+
+  public static final String PUSHDOWN_INDEX = ".pushdown.index";
+  public static final String SWIFT_PUSHDOWN_INDEX_PROPERTY = Constants.FS_SWIFT
+      + PUSHDOWN_INDEX;
+
+  public static final String PUSHDOWN_INDEX_WRITE = ".pushdown.index.write";
+  public static final String SWIFT_PUSHDOWN_INDEX_WRITE_PROPERTY = Constants.FS_SWIFT
+      + PUSHDOWN_INDEX_WRITE;
+
   public static final String SWIFT_BLOCK_SIZE_DEFAULT = "134217728";  // 128 MBytes
+  public static final String SWIFT_PREFETCH_DEPTH_DEFAULT = "0";  // read-ahead disabled
+  public static final String SWIFT_PREFETCH_BUFFER_SIZE_DEFAULT = "8388608";  // 8 MBytes
+  public static final String SWIFT_READ_THREADS_DEFAULT = "16";
+  public static final String SWIFT_PARALLEL_READS_DEFAULT = "1";  // single connection
+  public static final String SWIFT_PARALLEL_CHUNK_SIZE_DEFAULT = "8388608";  // 8 MBytes
+  public static final String SWIFT_DISK_CACHE_SIZE_DEFAULT = "10737418240";  // 10 GBytes
+  public static final String SWIFT_MEMORY_CACHE_SIZE_DEFAULT = "0";  // memory cache disabled
+  public static final String SWIFT_CACHE_BLOCK_SIZE_DEFAULT = "8388608";  // 8 MBytes
+  public static final String SWIFT_HTTP_MAX_CONNECTIONS_DEFAULT = "200";
+  public static final String SWIFT_HTTP_MAX_CONNECTIONS_PER_ROUTE_DEFAULT = "100";
+  public static final String SWIFT_HTTP_IDLE_TIMEOUT_DEFAULT = "60000";  // 1 minute
+  public static final String SWIFT_HTTP_SOCKET_TIMEOUT_DEFAULT = "60000";  // 1 minute
+  public static final String SWIFT_READ_POLICY_DEFAULT = "adaptive";
+  public static final String SWIFT_RANDOM_RANGE_SIZE_DEFAULT = "1048576";  // 1 MByte
+  public static final String SWIFT_REWIND_BUFFER_SIZE_DEFAULT = "0";  // disabled
+  public static final String SWIFT_SMALL_OBJECT_SIZE_DEFAULT = "0";
+  public static final String SWIFT_BUFFER_POOL_SIZE_DEFAULT = "67108864";  // 64 MBytes
+  public static final String SWIFT_RANGE_PIPELINE_DISTANCE_DEFAULT = "262144";  // 256 KBytes
+  public static final String SWIFT_READ_BUFFER_SIZE_DEFAULT = "65536";  // 64 KBytes
+  public static final String SWIFT_VECTORED_READ_MAX_GAP_DEFAULT = "65536";  // 64 KBytes
+  public static final String SWIFT_VECTORED_READ_MAX_SIZE_DEFAULT = "8388608";  // 8 MBytes
+  public static final String SWIFT_READ_RETRIES_DEFAULT = "3";
+  public static final String SWIFT_READ_RETRY_BACKOFF_DEFAULT = "100";  // milliseconds
+  public static final String SWIFT_READ_HEDGE_PERCENTILE_DEFAULT = "0";  // disabled
+  public static final String SWIFT_READ_HEDGE_MAX_LOAD_DEFAULT = "5";  // percent of the requests
+  public static final String SWIFT_READ_MIN_THROUGHPUT_DEFAULT = "0";  // disabled
+  public static final String SWIFT_READ_STALL_WINDOW_DEFAULT = "10000";  // milliseconds
+  public static final String SWIFT_TAIL_PREFETCH_SIZE_DEFAULT = "65536";  // 64 KBytes
+  public static final String SWIFT_TAIL_PREFETCH_SUFFIXES_DEFAULT = ".parquet,.orc";
+  public static final String SWIFT_PUSHDOWN_CACHE_SIZE_DEFAULT = "1073741824";  // 1 GByte
+  public static final String SWIFT_PUSHDOWN_CACHE_MAX_RESULT_DEFAULT = "16777216";  // 16 MBytes
+  public static final String SWIFT_PUSHDOWN_FALLBACK_PERIOD_DEFAULT = "0";  // disabled
+  public static final String SWIFT_PUSHDOWN_COST_MODEL_DEFAULT = "false";
+  public static final String SWIFT_PUSHDOWN_INDEX_DEFAULT = "false";
+  public static final String SWIFT_PUSHDOWN_INDEX_WRITE_DEFAULT = "false";
 }
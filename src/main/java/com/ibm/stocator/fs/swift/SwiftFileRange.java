@@ -0,0 +1,75 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+
+/**
+ * Range of an object requested by a vectored read. Its content is
+ * available through its future once the read is submitted
+ */
+public class SwiftFileRange {
+  /*
+   * Offset of the first byte of the range
+   */
+  private final long offset;
+  /*
+   * Number of bytes of the range
+   */
+  private final int length;
+  /*
+   * Content of the range. Null until the read is submitted
+   */
+  private Future<ByteBuffer> data;
+
+  /**
+   * Constructor
+   *
+   * @param rangeOffset offset of the first byte of the range
+   * @param rangeLength number of bytes of the range
+   */
+  public SwiftFileRange(long rangeOffset, int rangeLength) {
+    offset = rangeOffset;
+    length = rangeLength;
+  }
+
+  public long getOffset() {
+    return offset;
+  }
+
+  public int getLength() {
+    return length;
+  }
+
+  /**
+   * @return future content of the range, null if the read was not submitted
+   */
+  public Future<ByteBuffer> getData() {
+    return data;
+  }
+
+  public void setData(Future<ByteBuffer> rangeData) {
+    data = rangeData;
+  }
+
+  @Override
+  public String toString() {
+    return "range[" + offset + "," + (offset + length) + ")";
+  }
+}
@@ -0,0 +1,138 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.util.Arrays;
+
+/**
+ * Decides when a range GET is hedged by a duplicate request.
+ * The latency of the recent requests is tracked, a request that didn't get
+ * its response within the configured percentile of these latencies is
+ * duplicated. The duplicates are bounded to a share of the requests, so
+ * a slow cluster is not loaded further.
+ *
+ * Shared by the streams of a client. This class is thread-safe
+ */
+public class SwiftHedgePolicy {
+  /*
+   * Number of recent latencies the percentile is computed from
+   */
+  public static final int WINDOW = 100;
+  /*
+   * Number of latencies required before hedging
+   */
+  public static final int MIN_SAMPLES = 20;
+
+  /*
+   * Percentile of the latencies after which a request is hedged,
+   * 0 if hedging is disabled
+   */
+  private final int percentile;
+  /*
+   * Max hedged requests, in percent of the requests
+   */
+  private final int maxLoad;
+  /*
+   * Recent latencies in nanoseconds, circular
+   */
+  private final long[] latencies = new long[WINDOW];
+  /*
+   * Number of latencies recorded
+   */
+  private long samples;
+  /*
+   * Number of requests that may have been hedged
+   */
+  private long requests;
+  /*
+   * Number of hedged requests
+   */
+  private long hedges;
+
+  /**
+   * Constructor
+   *
+   * @param hedgePercentile percentile of the latencies after which a request
+   *        is hedged, 0 to disable hedging
+   * @param maxHedgeLoad max hedged requests, in percent of the requests
+   */
+  public SwiftHedgePolicy(int hedgePercentile, int maxHedgeLoad) {
+    percentile = Math.min(hedgePercentile, 100);
+    maxLoad = maxHedgeLoad;
+  }
+
+  /**
+   * @return true if hedging is enabled
+   */
+  public boolean isEnabled() {
+    return percentile > 0 && maxLoad > 0;
+  }
+
+  /**
+   * Records the latency of a completed request
+   *
+   * @param nanos time to the response in nanoseconds
+   */
+  public synchronized void requestCompleted(long nanos) {
+    latencies[(int) (samples % WINDOW)] = nanos;
+    samples++;
+  }
+
+  /**
+   * Records a request that may be hedged and returns the time to wait for
+   * its response before hedging it
+   *
+   * @return delay in nanoseconds or -1 if the request must not be hedged
+   */
+  public synchronized long requestStarted() {
+    requests++;
+    if (!isEnabled() || samples < MIN_SAMPLES || !hasBudget()) {
+      return -1;
+    }
+    int count = (int) Math.min(samples, WINDOW);
+    long[] sorted = Arrays.copyOf(latencies, count);
+    Arrays.sort(sorted);
+    int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+    return sorted[Math.max(index, 0)];
+  }
+
+  /**
+   * Reserves a hedged request, if the hedges are within their share
+   * of the requests
+   *
+   * @return true if the request may be hedged
+   */
+  public synchronized boolean acquireHedge() {
+    if (!hasBudget()) {
+      return false;
+    }
+    hedges++;
+    return true;
+  }
+
+  /**
+   * @return number of hedged requests
+   */
+  public synchronized long getHedges() {
+    return hedges;
+  }
+
+  private boolean hasBudget() {
+    return (hedges + 1) * 100 <= requests * maxLoad;
+  }
+}
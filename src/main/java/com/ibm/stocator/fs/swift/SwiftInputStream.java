@@ -16,23 +16,56 @@
 
 package com.ibm.stocator.fs.swift;
 
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.javaswift.joss.client.core.AbstractStoredObject;
+import org.javaswift.joss.exception.CommandException;
+import org.javaswift.joss.exception.ModifiedException;
+import org.javaswift.joss.exception.NotFoundException;
+import org.javaswift.joss.headers.object.conditional.IfMatch;
 import org.javaswift.joss.headers.object.range.AbstractRange;
 import org.javaswift.joss.instructions.DownloadInstructions;
 import org.javaswift.joss.model.StoredObject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.hadoop.fs.ByteBufferReadable;
 import org.apache.hadoop.fs.FSInputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 
-public class SwiftInputStream extends FSInputStream {
+public class SwiftInputStream extends FSInputStream implements ByteBufferReadable {
 
   private static final Logger LOG = LoggerFactory.getLogger(SwiftInputStream.class);
 
+  /*
+   * Size of the buffer used to drain the HTTP stream on forward seeks
+   */
+  private static final int DRAIN_BUFFER_SIZE = 64 * 1024;
+
   /*
    * File nativeStore instance
    */
@@ -43,11 +76,96 @@ public class SwiftInputStream extends FSInputStream {
    */
   private InputStream httpStream;
 
+  /*
+   * Channel over httpStream, used to read into direct buffers
+   */
+  private ReadableByteChannel httpChannel;
+
+  /*
+   * HTTP stream httpChannel was created for
+   */
+  private InputStream httpChannelStream;
+
   /*
    * Current position
    */
   private long pos = 0;
 
+  /*
+   * Offset of the last byte (inclusive) of the range served by httpStream
+   */
+  private long rangeEnd = -1;
+
+  /*
+   * Read-ahead of the ranges that follow the current one.
+   * Null if read-ahead is disabled or not yet initialized
+   */
+  private SwiftPrefetcher prefetcher;
+
+  /*
+   * Next single connection range, opened before the end of the current one.
+   * Null if not yet needed
+   */
+  private SwiftPrefetcher continuation;
+
+  /*
+   * Chooses between draining the current HTTP stream and a new request
+   * on forward seeks
+   */
+  private SwiftSeekPolicy seekPolicy;
+
+  /*
+   * Sizes the ranges requested by the single connection reads
+   */
+  private SwiftReadPolicy readPolicy;
+
+  /*
+   * Detects an HTTP stream slower than the throughput floor
+   */
+  private SwiftThroughputMonitor throughputMonitor;
+
+  /*
+   * Bytes recently read, replayed on short backward seeks
+   */
+  private SwiftRewindBuffer rewindBuffer;
+
+  /*
+   * Stream replaying the rewind buffer, then continuing with replayLive.
+   * Null if no backward seek was replayed from the current HTTP stream
+   */
+  private InputStream replayStream;
+
+  /*
+   * HTTP stream continued by replayStream, positioned after the rewind buffer
+   */
+  private InputStream replayLive;
+
+  /*
+   * End of the object, fetched in background on open. Null if not requested
+   */
+  private volatile Future<byte[]> tailFuture;
+
+  /*
+   * Offset of the first byte of the tail
+   */
+  private long tailStart;
+
+  /*
+   * Whole content of a small object. Not leased from the buffer pool, the
+   * positional reads copy from it without synchronization.
+   * Null if not downloaded
+   */
+  private volatile byte[] smallObject;
+  /*
+   * Serializes the download of the small object, not the reads of its content
+   */
+  private final Object smallObjectLock = new Object();
+
+  /*
+   * ETag of the object when the stream was opened. Null if not known
+   */
+  private volatile String objectEtag;
+
   /*
    * Reference to the stored object
    */
@@ -65,70 +183,814 @@ public class SwiftInputStream extends FSInputStream {
 
   public SwiftInputStream(SwiftAPIClient storeNative) {
     nativeStore = storeNative;
+    seekPolicy = new SwiftSeekPolicy(storeNative.getBlockSize());
+    readPolicy = new SwiftReadPolicy(storeNative.getReadPolicy(),
+        storeNative.getRandomRangeSize(), storeNative.getBlockSize());
+    throughputMonitor = new SwiftThroughputMonitor(storeNative.getReadMinThroughput(),
+        storeNative.getReadStallWindow());
+    rewindBuffer = new SwiftRewindBuffer(storeNative.getRewindBufferSize());
   }
 
   public SwiftInputStream(SwiftAPIClient storeNative, String hostName,
                           Path path) throws IOException {
+    this(storeNative, hostName, path, null);
+  }
+
+  /**
+   * Constructor. The object is validated with a HEAD request, unless
+   * its status is known
+   *
+   * @param storeNative store client
+   * @param hostName URL to host
+   * @param path path to the object
+   * @param status known status of the object or null
+   * @throws IOException if the object doesn't exist
+   */
+  public SwiftInputStream(SwiftAPIClient storeNative, String hostName,
+                          Path path, FileStatus status) throws IOException {
     this(storeNative);
     LOG.debug("init: {}", path.toString());
     String objectName = path.toString().substring(hostName.length());
     storedObject = nativeStore.getAccount().getContainer(nativeStore.getDataRoot())
         .getObject(objectName);
-    if (!storedObject.exists()) {
-      throw new FileNotFoundException(objectName + " is not exists");
+    if (!setKnownStatus(status)) {
+      if (!storedObject.exists()) {
+        throw new FileNotFoundException(objectName + " is not exists");
+      }
+      objectEtag = storedObject.getEtag();
     }
+    prefetchTail();
   }
 
   @Override
   public synchronized int read() throws IOException {
-    if (httpStream == null) {
-      // not sure we need it. need to re-check.
-      seek(0);
-    }
-    int result = -1;
-    result = httpStream.read();
-    if (result != -1) {
-      incPos(1);
+    for (int attempt = 0;; attempt++) {
+      try {
+        if (httpStream == null) {
+          // first read, the stream was unbuffered or is resumed
+          reopen(attempt);
+        }
+        int result = -1;
+        result = httpStream.read();
+        if (result == -1 && nextRange()) {
+          result = httpStream.read();
+        }
+        if (result != -1) {
+          rewindBuffer.record(pos, result);
+          incPos(1);
+          pipelineNextRange();
+        }
+        return result;
+      } catch (IOException e) {
+        resume(attempt, e);
+      }
     }
-    return result;
   }
 
   @Override
   public synchronized int read(byte[] b, int off, int len) throws IOException {
     LOG.trace("Reading portion of http stream for: {}. Offset: {} Len: {}",
         storedObject.getName(), off, len);
-    if (httpStream == null) {
-      // not sure we need it. need to re-check.
-      seek(0);
+    for (int attempt = 0;; attempt++) {
+      try {
+        if (httpStream == null) {
+          // first read, the stream was unbuffered or is resumed
+          reopen(attempt);
+        }
+        int result = -1;
+        long start = System.nanoTime();
+        result = httpStream.read(b, off, len);
+        if (result == -1 && nextRange()) {
+          start = System.nanoTime();
+          result = httpStream.read(b, off, len);
+        }
+        if (result != -1) {
+          long nanos = System.nanoTime() - start;
+          seekPolicy.bytesRead(result, nanos);
+          rewindBuffer.record(pos, b, off, result);
+          incPos(result);
+          checkThroughput(result, nanos);
+          pipelineNextRange();
+        }
+        return result;
+      } catch (IOException e) {
+        resume(attempt, e);
+      }
+    }
+  }
+
+  /**
+   * Reads into a byte buffer. Heap buffers are filled through their backing
+   * array, direct buffers are filled from the HTTP stream through a channel,
+   * without a caller sized intermediate array
+   *
+   * @param buf buffer to read into
+   * @return number of bytes read or -1 at the end of the stream
+   * @throws IOException if failed to read
+   */
+  @Override
+  public synchronized int read(ByteBuffer buf) throws IOException {
+    if (buf.hasArray()) {
+      int result = read(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+      if (result > 0) {
+        buf.position(buf.position() + result);
+      }
+      return result;
     }
-    int result = -1;
-    result = httpStream.read(b, off, len);
-    if (result != -1) {
-      incPos(result);
+    if (!buf.hasRemaining()) {
+      return 0;
+    }
+    for (int attempt = 0;; attempt++) {
+      try {
+        if (httpStream == null) {
+          reopen(attempt);
+        }
+        int bufStart = buf.position();
+        long start = System.nanoTime();
+        int result = getHttpChannel().read(buf);
+        if (result == -1 && nextRange()) {
+          start = System.nanoTime();
+          result = getHttpChannel().read(buf);
+        }
+        if (result > 0) {
+          long nanos = System.nanoTime() - start;
+          seekPolicy.bytesRead(result, nanos);
+          ByteBuffer data = buf.duplicate();
+          data.flip();
+          data.position(bufStart);
+          rewindBuffer.record(pos, data);
+          incPos(result);
+          checkThroughput(result, nanos);
+          pipelineNextRange();
+        }
+        return result;
+      } catch (IOException e) {
+        resume(attempt, e);
+      }
     }
-    return result;
+  }
+
+  /**
+   * Positional read served by an independent range GET.
+   * Neither the current HTTP stream nor the position of this stream are
+   * modified, so it doesn't synchronize with the sequential reads
+   *
+   * @param position position in the object to read from
+   * @param buffer buffer to read into
+   * @param offset offset in the buffer
+   * @param length max number of bytes to read
+   * @return number of bytes read or -1 if position is at the end of the object
+   * @throws IOException if failed to read
+   */
+  @Override
+  public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+    if (!isRangeAddressable()) {
+      return super.read(position, buffer, offset, length);
+    }
+    if (position < 0) {
+      throw new IOException("Negative position not supported");
+    }
+    if (length == 0) {
+      return 0;
+    }
+    long contentLength = storedObject.getContentLength();
+    if (position >= contentLength) {
+      return -1;
+    }
+    if (isSmallObject()) {
+      byte[] content = getSmallObject();
+      int bytes = (int) Math.min(length, contentLength - position);
+      System.arraycopy(content, (int) position, buffer, offset, bytes);
+      return bytes;
+    }
+    byte[] tail = getTail(position);
+    if (tail != null) {
+      int tailPos = (int) (position - tailStart);
+      int bytes = Math.min(length, tail.length - tailPos);
+      System.arraycopy(tail, tailPos, buffer, offset, bytes);
+      return bytes;
+    }
+    long to = Math.min(position + length, contentLength) - 1;
+    LOG.trace("Positional read {} - {} of {}", position, to, storedObject.getName());
+    int total = readRange(position, buffer, offset, (int) (to - position + 1));
+    return total == 0 ? -1 : total;
+  }
+
+  @Override
+  public void readFully(long position, byte[] buffer, int offset, int length)
+      throws IOException {
+    if (!isRangeAddressable()) {
+      super.readFully(position, buffer, offset, length);
+      return;
+    }
+    int total = 0;
+    while (total < length) {
+      int result = read(position + total, buffer, offset + total, length - total);
+      if (result < 0) {
+        throw new EOFException("End of object reached before reading fully");
+      }
+      total += result;
+    }
+  }
+
+  /**
+   * Vectored read. Nearby ranges are merged, the merged ranges are fetched
+   * concurrently by independent range GETs, and the future content of every
+   * range is set before returning. Neither the current HTTP stream nor the
+   * position of this stream are modified.
+   * The future of a range beyond the end of the object fails with an EOFException
+   *
+   * @param ranges ranges to read
+   * @throws IOException if a range is invalid
+   */
+  public void readVectored(List<? extends SwiftFileRange> ranges) throws IOException {
+    for (SwiftFileRange range : ranges) {
+      if (range.getOffset() < 0 || range.getLength() < 0) {
+        throw new IOException("Invalid " + range);
+      }
+    }
+    if (!isRangeAddressable()) {
+      for (final SwiftFileRange range : ranges) {
+        FutureTask<ByteBuffer> task = new FutureTask<ByteBuffer>(new Callable<ByteBuffer>() {
+          @Override
+          public ByteBuffer call() throws Exception {
+            byte[] data = new byte[range.getLength()];
+            readFully(range.getOffset(), data, 0, data.length);
+            return ByteBuffer.wrap(data);
+          }
+        });
+        task.run();
+        range.setData(task);
+      }
+      return;
+    }
+    final long contentLength = storedObject.getContentLength();
+    List<SwiftCombinedRange> combinedRanges = SwiftCombinedRange.coalesce(ranges,
+        nativeStore.getVectoredReadMaxGap(), nativeStore.getVectoredReadMaxSize());
+    LOG.debug("Vectored read of {} ranges with {} requests for: {}", ranges.size(),
+        combinedRanges.size(), storedObject.getName());
+    for (final SwiftCombinedRange combined : combinedRanges) {
+      Future<byte[]> content = nativeStore.getReadExecutor().submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws Exception {
+          long end = Math.min(combined.getEnd(), contentLength);
+          if (end <= combined.getStart()) {
+            return new byte[0];
+          }
+          byte[] data = new byte[(int) (end - combined.getStart())];
+          int len = readRange(combined.getStart(), data, 0, data.length);
+          return len == data.length ? data : Arrays.copyOf(data, len);
+        }
+      });
+      for (SwiftFileRange range : combined.getChildren()) {
+        range.setData(new RangeFuture(content, (int) (range.getOffset() - combined.getStart()),
+            range.getLength()));
+      }
+    }
+  }
+
+  /**
+   * Opens a new HTTP stream at the current position. A resumed stream first
+   * makes sure the object was not replaced since it was opened
+   *
+   * @param attempt number of the failed attempts to read
+   * @throws IOException if failed to open the HTTP stream or the object was modified
+   */
+  private void reopen(int attempt) throws IOException {
+    if (attempt > 0) {
+      verifyVersion();
+    }
+    seek(pos);
+  }
+
+  /**
+   * Handles an error of the HTTP stream. Network errors of a stream whose
+   * positions are the offsets of the object are retried from the current
+   * position, after an exponential backoff. The failed HTTP stream of such
+   * a stream is aborted, the next attempt or read opens a new one
+   *
+   * @param attempt number of the failed attempts to read, the failed one excluded
+   * @param error error of the failed attempt
+   * @throws IOException the error, if it can't be retried
+   */
+  private void resume(int attempt, IOException error) throws IOException {
+    if (!isRangeAddressable()) {
+      throw error;
+    }
+    try {
+      if (httpStream != null) {
+        releaseHttpStream(true);
+      }
+    } catch (IOException e) {
+      LOG.debug("Failed to close the HTTP stream of {}: {}", storedObject.getName(),
+          e.getMessage());
+    } finally {
+      httpStream = null;
+    }
+    if (error instanceof FileNotFoundException || error instanceof ModifiedObjectException
+        || attempt >= nativeStore.getReadRetries() || Thread.currentThread().isInterrupted()) {
+      throw error;
+    }
+    long backoff = nativeStore.getReadRetryBackoff() << attempt;
+    LOG.warn("Read of {} failed at {}: {}. Resume in {} ms", storedObject.getName(), pos,
+        error.getMessage(), backoff);
+    try {
+      Thread.sleep(backoff);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while resuming the read of "
+          + storedObject.getName());
+    }
+  }
+
+  /**
+   * Abandons the HTTP stream once its throughput stays below the floor for
+   * a window. Its request is aborted, the next read continues from the
+   * current position with a new request, on another connection.
+   * Reconnections stop after as many consecutive slow windows as the read
+   * retries, the whole cluster is slow. Only applies to the body of an
+   * HTTP response, not to the streams over buffered or cached content
+   *
+   * @param bytes number of bytes read
+   * @param nanos duration of the read in nanoseconds
+   */
+  private void checkThroughput(int bytes, long nanos) {
+    if (!throughputMonitor.bytesRead(bytes, nanos) || !isRangeAddressable()
+        || throughputMonitor.getStalls() > nativeStore.getReadRetries()) {
+      return;
+    }
+    InputStream stream = httpStream == replayStream ? replayLive : httpStream;
+    if (!(stream instanceof Abortable)) {
+      return;
+    }
+    LOG.warn("Read of {} stalled at {} below {} bytes/s, reconnect", storedObject.getName(),
+        pos, nativeStore.getReadMinThroughput());
+    try {
+      releaseHttpStream(true);
+    } catch (IOException e) {
+      LOG.debug("Failed to abort the HTTP stream of {}: {}", storedObject.getName(),
+          e.getMessage());
+    } finally {
+      httpStream = null;
+    }
+  }
+
+  /**
+   * Makes sure the object was not replaced since the stream was opened.
+   * Once the ETag is known, every GET is conditional on it. Otherwise it is
+   * requested with a HEAD, after comparing the length and modification time
+   * with the ones the stream was opened with
+   *
+   * @throws IOException if the object was modified or its status can't be requested
+   */
+  private void verifyVersion() throws IOException {
+    if (objectEtag != null || !(storedObject instanceof AbstractStoredObject)) {
+      return;
+    }
+    long length = storedObject.getContentLength();
+    long lastModified = storedObject.getLastModifiedAsDate().getTime();
+    try {
+      ((AbstractStoredObject) storedObject).reload();
+      // the modification time of a known status may be more precise than the headers
+      if (storedObject.getContentLength() != length
+          || Math.abs(storedObject.getLastModifiedAsDate().getTime() - lastModified) >= 1000) {
+        throw new ModifiedObjectException(storedObject.getName());
+      }
+      objectEtag = storedObject.getEtag();
+    } catch (NotFoundException e) {
+      throw new FileNotFoundException(storedObject.getName() + " does not exist");
+    } catch (CommandException e) {
+      throw new IOException("Failed to get the status of " + storedObject.getName(), e);
+    }
+  }
+
+  /**
+   * Sets the length and modification time of the stored object from its
+   * known status, so they are not requested with a HEAD. A missing object
+   * is then reported by the first GET
+   *
+   * @param status known status of the object or null
+   * @return true if the status was set, false if the object must be validated
+   */
+  protected boolean setKnownStatus(FileStatus status) {
+    if (status == null || !(storedObject instanceof AbstractStoredObject)) {
+      return false;
+    }
+    LOG.debug("Open {} with known length {}", storedObject.getName(), status.getLen());
+    storedObject.setContentLength(status.getLen());
+    storedObject.setLastModified(new Date(status.getModificationTime()));
+    ((AbstractStoredObject) storedObject).metadataSetFromHeaders();
+    return true;
+  }
+
+  /**
+   * Version of the object used in the cache keys: its ETag, known once the
+   * object was validated with a HEAD. A stream opened with a known status
+   * has no ETag until its version is verified, its version is then the
+   * length and modification time, see {@link #getStatusVersion}. An object
+   * overwritten with the same length within the same second isn't detected
+   * by this fallback
+   *
+   * @return version of the object
+   */
+  protected String getObjectVersion() {
+    String etag = objectEtag;
+    return etag != null ? etag : getStatusVersion();
+  }
+
+  /**
+   * Version of the object from its length and modification time, the same
+   * whether the stream was opened with a HEAD or with a known status. The
+   * time is rounded up to the second, as in the Last-Modified header, the
+   * listings are more precise
+   *
+   * @return version of the object
+   */
+  protected String getStatusVersion() {
+    long seconds = (storedObject.getLastModifiedAsDate().getTime() + 999) / 1000;
+    return storedObject.getContentLength() + "-" + seconds;
+  }
+
+  /**
+   * Reads a range of the object with a dedicated range GET
+   *
+   * @param from offset of the first byte
+   * @param buffer buffer to read into
+   * @param offset offset in the buffer
+   * @param length number of bytes to read
+   * @return number of bytes read, less than length if the object ended
+   * @throws IOException if failed to read
+   */
+  private int readRange(long from, byte[] buffer, int offset, int length) throws IOException {
+    InputStream in = openRange(from, from + length - 1);
+    int total = 0;
+    try {
+      int result = 0;
+      while (total < length && (result = in.read(buffer, offset + total, length - total)) > 0) {
+        total += result;
+      }
+    } finally {
+      in.close();
+    }
+    return total;
+  }
+
+  /**
+   * Starts fetching the end of the object in background, if configured for
+   * this object. Footers of columnar files are read right after the open,
+   * they are then served without a round-trip
+   */
+  protected void prefetchTail() {
+    long length = storedObject.getContentLength();
+    int size = nativeStore.getTailPrefetchSize(storedObject.getName());
+    if (size <= 0 || length <= 0 || !isRangeAddressable() || isSmallObject()) {
+      return;
+    }
+    tailStart = Math.max(0, length - size);
+    final long from = tailStart;
+    final int tailLength = (int) (length - tailStart);
+    LOG.debug("Prefetch tail {} - {} of {}", from, length - 1, storedObject.getName());
+    tailFuture = nativeStore.getReadExecutor().submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        byte[] data = new byte[tailLength];
+        int len = readRange(from, data, 0, tailLength);
+        return len == tailLength ? data : Arrays.copyOf(data, len);
+      }
+    });
+  }
+
+  /**
+   * Prefetched tail of the object, if it contains a position. Waits for the
+   * tail only if the position is in its range. A failed or cancelled tail
+   * is ignored, the position is then read from the object
+   *
+   * @param position position in the object
+   * @return content of the tail or null if the position is not in the tail
+   */
+  private byte[] getTail(long position) {
+    Future<byte[]> future = tailFuture;
+    if (future == null || position < tailStart) {
+      return null;
+    }
+    byte[] tail;
+    try {
+      tail = future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } catch (ExecutionException e) {
+      LOG.debug("Tail prefetch failed for {}: {}", storedObject.getName(),
+          e.getCause().getMessage());
+      return null;
+    } catch (CancellationException e) {
+      // cancelled by close or unbuffer while a positional read was waiting
+      return null;
+    }
+    return position < tailStart + tail.length ? tail : null;
+  }
+
+  /**
+   * @return true if the object is read entirely with a single GET
+   */
+  private boolean isSmallObject() {
+    return isRangeAddressable() && nativeStore.getSmallObjectSize() > 0
+        && storedObject.getContentLength() <= nativeStore.getSmallObjectSize();
+  }
+
+  /**
+   * Whole content of a small object, downloaded with a single unranged GET
+   * on first use. Only the download holds a lock, the stream monitor isn't
+   * taken
+   *
+   * @return content of the object
+   * @throws IOException if failed to download the object
+   */
+  private byte[] getSmallObject() throws IOException {
+    byte[] content = smallObject;
+    if (content != null) {
+      return content;
+    }
+    synchronized (smallObjectLock) {
+      content = smallObject;
+      if (content == null) {
+        content = downloadSmallObject();
+        smallObject = content;
+      }
+      return content;
+    }
+  }
+
+  /**
+   * @return content of the small object, downloaded with an unranged GET
+   * @throws IOException if failed to download the object
+   */
+  private byte[] downloadSmallObject() throws IOException {
+    int length = (int) storedObject.getContentLength();
+    LOG.debug("Download small object {} of {} bytes", storedObject.getName(), length);
+    byte[] buffer = new byte[length];
+    InputStream in = download(new DownloadInstructions());
+    try {
+      int total = 0;
+      int result = 0;
+      while (total < length && (result = in.read(buffer, total, length - total)) > 0) {
+        total += result;
+      }
+      if (total < length) {
+        throw new EOFException("Unexpected end of " + storedObject.getName() + " at " + total);
+      }
+    } finally {
+      in.close();
+    }
+    return buffer;
+  }
+
+  /**
+   * Channel over the current HTTP stream. Created again whenever
+   * the HTTP stream is replaced
+   *
+   * @return channel that reads from httpStream
+   */
+  private ReadableByteChannel getHttpChannel() {
+    if (httpChannel == null || httpChannelStream != httpStream) {
+      httpChannel = Channels.newChannel(httpStream);
+      httpChannelStream = httpStream;
+    }
+    return httpChannel;
+  }
+
+  /**
+   * Continues the read after the end of the current range, with the
+   * prefetched range that follows or with a new request
+   *
+   * @return true if httpStream was replaced by the next range
+   * @throws IOException if failed to open the next range
+   */
+  private boolean nextRange() throws IOException {
+    if (nextPrefetchedRange() || nextPipelinedRange()) {
+      return true;
+    }
+    if (!isRangeAddressable() || pos != rangeEnd + 1
+        || pos >= storedObject.getContentLength()) {
+      return false;
+    }
+    LOG.trace("Continue {} with a new range from {}", storedObject.getName(), pos);
+    readPolicy.rangeContinued();
+    httpStream.close();
+    httpStream = null;
+    seek(pos);
+    return true;
+  }
+
+  /**
+   * Switches to the prefetched range that follows the exhausted one
+   *
+   * @return true if httpStream was replaced by the next prefetched range
+   * @throws IOException if failed to get the prefetched range
+   */
+  private boolean nextPrefetchedRange() throws IOException {
+    if (prefetcher == null || pos != rangeEnd + 1) {
+      return false;
+    }
+    SwiftPrefetcher.PrefetchedRange next = prefetcher.take(pos);
+    if (next == null) {
+      return false;
+    }
+    LOG.trace("Continue {} with prefetched range {} - {}", storedObject.getName(),
+        next.getStart(), next.getEnd());
+    httpStream.close();
+    httpStream = next.getStream();
+    rangeEnd = next.getEnd();
+    prefetcher.prefetch(rangeEnd + 1);
+    return true;
+  }
+
+  /**
+   * Sends the GET of the range that follows the current single connection
+   * range, once the read is close to its end. The switch at the end of the
+   * range then doesn't wait for a request. Random reads are pipelined only
+   * once a range was read to its end, the next range is then likely read.
+   * Read-ahead, caches and parallel reads chain their own ranges
+   */
+  private void pipelineNextRange() {
+    long next = rangeEnd + 1;
+    if (rangeEnd < 0 || next - pos > nativeStore.getRangePipelineDistance()
+        || !readPolicy.isNextRangeExpected()) {
+      return;
+    }
+    long length = storedObject.getContentLength();
+    if (next >= length || !isRangeAddressable() || nativeStore.getPrefetchDepth() > 0
+        || nativeStore.getMemoryCache() != null || nativeStore.getDiskCache() != null
+        || nativeStore.getParallelReads() > 1) {
+      return;
+    }
+    if (continuation == null) {
+      continuation = new SwiftPrefetcher(this, nativeStore.getReadExecutor(), 1, 0, 0, length);
+    }
+    continuation.prefetch(next, readPolicy.getRangeEnd(next, length));
+  }
+
+  /**
+   * Switches to the pipelined range that follows the exhausted one
+   *
+   * @return true if httpStream was replaced by the next pipelined range
+   * @throws IOException if the wait for the pipelined range was interrupted
+   */
+  private boolean nextPipelinedRange() throws IOException {
+    if (continuation == null || pos != rangeEnd + 1) {
+      return false;
+    }
+    SwiftPrefetcher.PrefetchedRange next = continuation.take(pos);
+    if (next == null) {
+      return false;
+    }
+    LOG.trace("Continue {} with pipelined range {} - {}", storedObject.getName(),
+        next.getStart(), next.getEnd());
+    readPolicy.rangeContinued();
+    httpStream.close();
+    httpStream = next.getStream();
+    rangeEnd = next.getEnd();
+    return true;
   }
 
   @Override
   public synchronized void close() throws IOException {
     LOG.trace("Closing http stream: {}", storedObject.getName());
     try {
+      if (prefetcher != null) {
+        prefetcher.cancel();
+      }
+      if (continuation != null) {
+        continuation.cancel();
+      }
+      if (tailFuture != null) {
+        tailFuture.cancel(false);
+      }
       if (httpStream != null) {
-        httpStream.close();
+        releaseHttpStream(false);
       }
     } finally {
       httpStream = null;
+      replayStream = null;
+      replayLive = null;
+      smallObject = null;
+      httpChannel = null;
+      httpChannelStream = null;
     }
   }
 
+  /**
+   * Releases the HTTP stream, its connection and the buffers of this stream,
+   * keeping its position. The next read opens a new HTTP stream at the
+   * position. Lets callers keep many idle streams open. The request of the
+   * HTTP stream is aborted, the rest of its range is not read.
+   * Same contract as CanUnbuffer, not available in this Hadoop version.
+   * Ignored if the positions are not the offsets of the object, the stream
+   * could not be opened again at its position
+   *
+   * @throws IOException if failed to close the HTTP stream
+   */
+  public synchronized void unbuffer() throws IOException {
+    if (!isRangeAddressable()) {
+      return;
+    }
+    LOG.trace("Unbuffer {} at {}", storedObject.getName(), pos);
+    Future<byte[]> tail = tailFuture;
+    tailFuture = null;
+    if (tail != null) {
+      tail.cancel(false);
+    }
+    rewindBuffer.release();
+    if (httpStream != null) {
+      releaseHttpStream(true);
+    }
+    close();
+  }
+
   @Override
   public synchronized void seek(long targetPos) throws IOException {
-    seekPart1(targetPos);
-    DownloadInstructions instructions = seekPart2(targetPos);
-    seekPart3(targetPos, instructions);
+    boolean reopen = httpStream != null;
+    if (!seekPart1(targetPos)) {
+      return;
+    }
+    if (reopen) {
+      readPolicy.seekRequested();
+    }
+    throughputMonitor.reset();
+    if (isSmallObject()) {
+      byte[] content = getSmallObject();
+      int length = (int) storedObject.getContentLength();
+      int start = (int) Math.min(targetPos, length);
+      httpStream = new ByteArrayInputStream(content, start, length - start);
+      pos = targetPos;
+      rangeEnd = length - 1;
+      return;
+    }
+    byte[] tail = getTail(targetPos);
+    if (tail != null) {
+      LOG.debug("Seek served by the prefetched tail for: {}", storedObject.getName());
+      int tailPos = (int) (targetPos - tailStart);
+      httpStream = new ByteArrayInputStream(tail, tailPos, tail.length - tailPos);
+      pos = targetPos;
+      rangeEnd = tailStart + tail.length - 1;
+      return;
+    }
+    long targetEnd = targetPos + nativeStore.getBlockSize();
+    SwiftPrefetcher.PrefetchedRange prefetched = null;
+    boolean blockCache = nativeStore.getMemoryCache() != null
+        || nativeStore.getDiskCache() != null;
+    if (nativeStore.getPrefetchDepth() > 0 && !blockCache) {
+      if (prefetcher == null) {
+        prefetcher = new SwiftPrefetcher(this, nativeStore.getReadExecutor(),
+            nativeStore.getPrefetchDepth(), nativeStore.getPrefetchBufferSize(),
+            nativeStore.getBlockSize(), storedObject.getContentLength());
+      }
+      prefetched = prefetcher.take(targetPos);
+    }
+    if (prefetched != null) {
+      LOG.debug("Seek served by prefetched range {} - {} for: {}", prefetched.getStart(),
+          prefetched.getEnd(), storedObject.getName());
+      httpStream = prefetched.getStream();
+      pos = targetPos;
+      targetEnd = prefetched.getEnd();
+    } else if (blockCache) {
+      String objectKey = nativeStore.getDataRoot() + "/" + storedObject.getName() + "/"
+          + getObjectVersion();
+      httpStream = new CachedRangeInputStream(this, nativeStore.getMemoryCache(),
+          nativeStore.getDiskCache(), objectKey, nativeStore.getCacheBlockSize(),
+          storedObject.getContentLength(), targetPos, targetEnd);
+      pos = targetPos;
+    } else if (nativeStore.getParallelReads() > 1) {
+      targetEnd = Math.min(targetEnd, storedObject.getContentLength() - 1);
+      LOG.debug("Parallel read of range {} - {} for: {}", targetPos, targetEnd,
+          storedObject.getName());
+      httpStream = new ParallelRangeInputStream(this, nativeStore.getReadExecutor(), targetPos,
+          targetEnd, nativeStore.getParallelChunkSize(), nativeStore.getParallelReads(),
+          storedObject.getContentLength());
+      pos = targetPos;
+    } else {
+      targetEnd = readPolicy.getRangeEnd(targetPos, storedObject.getContentLength());
+      DownloadInstructions instructions = seekPart2(targetPos, targetEnd);
+      // the losing request is drained on close, only small ranges are hedged
+      boolean hedge = nativeStore.getHedgePolicy().isEnabled()
+          && targetEnd - targetPos < nativeStore.getRandomRangeSize();
+      seekPart3(targetPos, instructions, hedge);
+    }
+    rangeEnd = targetEnd;
+    if (prefetcher != null) {
+      prefetcher.prefetch(rangeEnd + 1);
+    }
   }
 
-  protected void seekPart1(long targetPos) throws IOException {
+  /**
+   * First part of the seek. Moves within the current HTTP stream if possible,
+   * otherwise closes it
+   *
+   * @param targetPos new target position
+   * @return true if a new HTTP stream is required to reach targetPos
+   * @throws IOException if the target position is negative or failed to read
+   */
+  protected boolean seekPart1(long targetPos) throws IOException {
     LOG.debug("seek method to: {}, for {}", targetPos, storedObject.getName());
     if (targetPos < 0) {
       throw new IOException("Negative Seek offset not supported");
@@ -139,40 +1001,177 @@ public class SwiftInputStream extends FSInputStream {
       if (offset == 0) {
         LOG.trace("seek called on same position as the previous one. New HTTP Stream is not "
                 + "required.");
-        return;
+        return false;
+      }
+      if (offset < 0 && rewindBuffer.contains(targetPos)) {
+        LOG.trace("seek position is in the rewind buffer; offset: {}. New HTTP Stream is not "
+                + "required.", offset);
+        rewind(targetPos);
+        return false;
       }
-      long blockSize = nativeStore.getBlockSize();
       if (offset < 0) {
         LOG.trace("seek position is outside the current stream; offset: {}. New HTTP Stream is "
                 + "required.", offset);
-      } else if ((offset < blockSize)) {
-        //if the seek is in  range of that requested, scan forwards
+      } else if (rangeEnd >= 0 && targetPos > rangeEnd) {
+        LOG.trace("seek position is beyond the current range; rangeEnd: {}. New HTTP Stream is "
+                + "required.", rangeEnd);
+      } else if (seekPolicy.shouldSkip(offset)) {
+        //if draining the gap is cheaper than a new request, scan forwards
         //instead of closing and re-opening a new HTTP connection
-        LOG.trace("seek is within current stream; offset: {} blockSize: {}.", offset, blockSize);
-        int result = -1;
-        long byteRead;
-        for (byteRead = 0; byteRead < offset; byteRead++) {
-          result = httpStream.read();
-          if (result < 0) {
-            break;
-          }
-        }
-        incPos(byteRead);
+        LOG.trace("seek is within current stream; offset: {} threshold: {}.", offset,
+            seekPolicy.getSkipThreshold());
+        incPos(drain(offset));
         if (targetPos == pos) {
           LOG.trace("seek reached targetPos: {}. New HTTP Stream is not required.", targetPos);
-          return;
+          return false;
         }
         LOG.trace("seek failed to reach targetPos: {}. New HTTP Stream is required.", targetPos);
       }
-      httpStream.close();
+      releaseHttpStream(false);
     }
     LOG.trace("seek method is opening a new HTTP Stream to: {}, for {}", targetPos,
             storedObject.getName());
+    if (continuation != null) {
+      continuation.cancel();
+    }
+    rewindBuffer.reset(targetPos);
+    return true;
+  }
+
+  /**
+   * Releases the HTTP stream before its end. The rest of the range is drained
+   * if shorter than the skip threshold, the connection is then reused.
+   * Otherwise the request is aborted, closing the response would read the
+   * rest of the range
+   *
+   * @param abort true to abort the request whatever the rest of the range,
+   *        when the HTTP stream failed or must be released without delay
+   * @throws IOException if failed to release the HTTP stream
+   */
+  private void releaseHttpStream(boolean abort) throws IOException {
+    // a replay reads the recorded bytes, then continues with the HTTP stream
+    InputStream stream = httpStream == replayStream ? replayLive : httpStream;
+    httpStream = null;
+    replayStream = null;
+    replayLive = null;
+    if (stream instanceof Abortable && (abort || rangeEnd < 0
+        || rangeEnd - pos >= seekPolicy.getSkipThreshold())) {
+      ((Abortable) stream).abort();
+    } else {
+      stream.close();
+    }
+  }
+
+  /**
+   * Moves back within the rewind buffer. The recorded bytes from the target
+   * position are read again, then the HTTP stream continues after them
+   *
+   * @param targetPos new position, recorded in the rewind buffer
+   */
+  private void rewind(long targetPos) {
+    // a replay in progress is replaced, its HTTP stream is after the recorded bytes
+    InputStream live = httpStream == replayStream ? replayLive : httpStream;
+    replayStream = new SequenceInputStream(rewindBuffer.replay(targetPos), live);
+    replayLive = live;
+    httpStream = replayStream;
+    pos = targetPos;
+  }
+
+  /**
+   * Reads and discards bytes of the current HTTP stream, through a buffer
+   * leased from the pool
+   *
+   * @param bytes number of bytes to discard
+   * @return number of bytes discarded, less than requested if the stream ended
+   * @throws IOException if failed to read
+   */
+  private long drain(long bytes) throws IOException {
+    byte[] drainBuffer = nativeStore.getBufferPool().acquire(DRAIN_BUFFER_SIZE);
+    long drained = 0;
+    long start = System.nanoTime();
+    try {
+      while (drained < bytes) {
+        int result = httpStream.read(drainBuffer, 0,
+            (int) Math.min(drainBuffer.length, bytes - drained));
+        if (result < 0) {
+          break;
+        }
+        rewindBuffer.record(pos + drained, drainBuffer, 0, result);
+        drained += result;
+      }
+    } finally {
+      nativeStore.getBufferPool().release(drainBuffer);
+    }
+    seekPolicy.bytesRead(drained, System.nanoTime() - start);
+    return drained;
+  }
+
+  /**
+   * Second part of the seek. Download instructions of the range to read,
+   * open-ended if the range reaches the end of the object
+   *
+   * @param targetPos offset of the first byte
+   * @param targetEnd offset of the last byte (inclusive)
+   * @return download instructions of the range
+   * @throws IOException if failed to compute the range
+   */
+  protected DownloadInstructions seekPart2(long targetPos, long targetEnd) throws IOException {
+    if (targetEnd >= storedObject.getContentLength() - 1) {
+      LOG.trace("Open-ended read from {} for: {}", targetPos, storedObject.getName());
+      return getRangeInstructions(targetPos, -1);
+    }
+    return getRangeInstructions(targetPos, targetEnd);
+  }
+
+  /**
+   * Opens an HTTP stream on a range of the object. Doesn't modify
+   * the state of this input stream, so may be called concurrently
+   *
+   * @param from offset of the first byte
+   * @param to offset of the last byte (inclusive)
+   * @return HTTP stream of the range
+   * @throws IOException if the object doesn't exist
+   */
+  InputStream openRange(long from, long to) throws IOException {
+    return download(getRangeInstructions(from, to));
   }
 
-  protected DownloadInstructions seekPart2(long targetPos) throws IOException {
+  /**
+   * Sends a GET request of the object. Ranges of the object are requested
+   * on the condition that its ETag is still the one the stream was opened
+   * with, so a stream never mixes the content of two versions.
+   * The body is read through a buffer leased from the pool of the client
+   *
+   * @param instructions download instructions
+   * @return HTTP stream of the response
+   * @throws FileNotFoundException if the object doesn't exist
+   * @throws IOException if the object was modified
+   */
+  protected InputStream download(DownloadInstructions instructions) throws IOException {
+    String etag = objectEtag;
+    if (etag != null && isRangeAddressable()) {
+      instructions.setMatchConditional(new IfMatch(etag));
+    }
+    try {
+      return new PooledInputStream(storedObject.downloadObjectAsInputStream(instructions),
+          nativeStore.getBufferPool(), nativeStore.getReadBufferSize());
+    } catch (NotFoundException e) {
+      throw new FileNotFoundException(storedObject.getName() + " does not exist");
+    } catch (ModifiedException e) {
+      throw new ModifiedObjectException(storedObject.getName());
+    }
+  }
+
+  /**
+   * Download instructions of a range
+   *
+   * @param from offset of the first byte
+   * @param to offset of the last byte (inclusive), negative to read to the end
+   * @return download instructions of the range
+   */
+  protected static DownloadInstructions getRangeInstructions(long from, long to) {
     DownloadInstructions instructions = new DownloadInstructions();
-    AbstractRange range = new AbstractRange(targetPos, targetPos + nativeStore.getBlockSize()) {
+    AbstractRange range = new AbstractRange(from, to) {
 
       @Override
       public long getTo(int arg0) {
@@ -189,11 +1188,169 @@ public class SwiftInputStream extends FSInputStream {
   }
 
   protected void seekPart3(long targetPos, DownloadInstructions instructions) throws IOException {
-    httpStream = storedObject.downloadObjectAsInputStream(instructions);
+    seekPart3(targetPos, instructions, false);
+  }
+
+  /**
+   * Third part of the seek, for a stream not opened by this input stream
+   *
+   * @param targetPos offset of the first byte
+   * @param stream stream of the content from the offset
+   */
+  protected void seekPart3(long targetPos, InputStream stream) {
+    httpStream = stream;
+    pos = targetPos;
+  }
+
+  /**
+   * Third part of the seek. Sends the GET of the range
+   *
+   * @param targetPos offset of the first byte
+   * @param instructions download instructions of the range
+   * @param hedge true if the GET may be hedged by a duplicate request
+   * @throws IOException if failed to get the range
+   */
+  private void seekPart3(long targetPos, DownloadInstructions instructions, boolean hedge)
+      throws IOException {
+    long start = System.nanoTime();
+    httpStream = hedge && isRangeAddressable() ? hedgedDownload(instructions)
+        : download(instructions);
+    seekPolicy.requestCompleted(System.nanoTime() - start);
     LOG.debug("Seek completed. Got HTTP Stream for: {}", storedObject.getName());
     pos = targetPos;
   }
 
+  /**
+   * Sends the GET of a range and, if its response is slower than most of the
+   * recent ones, a duplicate GET. The first response is used, the other one
+   * is closed as soon as it arrives
+   *
+   * @param instructions download instructions of the range
+   * @return HTTP stream of the first response
+   * @throws IOException if all the requests failed
+   */
+  private InputStream hedgedDownload(DownloadInstructions instructions) throws IOException {
+    SwiftHedgePolicy policy = nativeStore.getHedgePolicy();
+    long delay = policy.requestStarted();
+    if (delay < 0) {
+      long start = System.nanoTime();
+      InputStream in = download(instructions);
+      policy.requestCompleted(System.nanoTime() - start);
+      return in;
+    }
+    CompletionService<InputStream> completion = new ExecutorCompletionService<InputStream>(
+        nativeStore.getConnectionPool().getHedgeExecutor());
+    AtomicBoolean served = new AtomicBoolean();
+    List<Future<InputStream>> requests = new ArrayList<Future<InputStream>>(2);
+    requests.add(completion.submit(hedgedRequest(copy(instructions), served)));
+    IOException error = null;
+    try {
+      Future<InputStream> done = completion.poll(delay, TimeUnit.NANOSECONDS);
+      if (done == null && policy.acquireHedge()) {
+        LOG.debug("Hedge the GET of {} after {} ms", storedObject.getName(),
+            TimeUnit.NANOSECONDS.toMillis(delay));
+        requests.add(completion.submit(hedgedRequest(copy(instructions), served)));
+      }
+      for (int pending = requests.size(); pending > 0; pending--) {
+        if (done == null) {
+          done = completion.take();
+        }
+        try {
+          InputStream in = done.get();
+          if (in != null) {
+            return in;
+          }
+        } catch (ExecutionException e) {
+          error = e.getCause() instanceof IOException ? (IOException) e.getCause()
+              : new IOException("Failed to get " + storedObject.getName(), e.getCause());
+        }
+        done = null;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      error = new InterruptedIOException("Interrupted while reading " + storedObject.getName());
+    }
+    // the requests still running close their response, unless one was served
+    if (!served.compareAndSet(false, true)) {
+      closeServed(requests);
+    }
+    throw error;
+  }
+
+  /**
+   * One of the requests of a hedged GET. Its response is closed if the
+   * response of another request was already used
+   *
+   * @param instructions download instructions of the range
+   * @param served set by the request whose response is used
+   * @return the request, returning the HTTP stream or null if not used
+   */
+  private Callable<InputStream> hedgedRequest(final DownloadInstructions instructions,
+      final AtomicBoolean served) {
+    return new Callable<InputStream>() {
+      @Override
+      public InputStream call() throws Exception {
+        long start = System.nanoTime();
+        InputStream in = download(instructions);
+        nativeStore.getHedgePolicy().requestCompleted(System.nanoTime() - start);
+        if (served.compareAndSet(false, true)) {
+          return in;
+        }
+        LOG.trace("Close the slower response of {}", storedObject.getName());
+        in.close();
+        return null;
+      }
+    };
+  }
+
+  /**
+   * Closes the response of the hedged request that was served after its
+   * caller gave up, once the request completes. Waits on the read executor,
+   * a bounded hedge executor could be filled with waits for its own requests
+   */
+  private void closeServed(final List<Future<InputStream>> requests) {
+    nativeStore.getReadExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        for (Future<InputStream> request : requests) {
+          try {
+            InputStream in = request.get();
+            if (in != null) {
+              in.close();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+          } catch (ExecutionException | IOException e) {
+            LOG.debug("Failed to close a response of {}: {}", storedObject.getName(),
+                e.getMessage());
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Copy of the download instructions of a range, for a request that
+   * sets its own headers
+   */
+  private static DownloadInstructions copy(DownloadInstructions instructions) {
+    DownloadInstructions copy = new DownloadInstructions();
+    copy.setRange(instructions.getRange());
+    return copy;
+  }
+
+  /**
+   * Positions of this stream are the byte offsets of the object, thus
+   * ranges of the stream may be read directly from the object.
+   * Not the case when the content is transformed on the server side
+   *
+   * @return true if positions of this stream are the offsets of the object
+   */
+  protected boolean isRangeAddressable() {
+    return true;
+  }
+
   @Override
   public synchronized long getPos() throws IOException {
     return pos;
@@ -210,4 +1367,65 @@ public class SwiftInputStream extends FSInputStream {
   public boolean seekToNewSource(long targetPos) throws IOException {
     return false;
   }
+
+  /**
+   * The object was replaced while being read
+   */
+  private static class ModifiedObjectException extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    ModifiedObjectException(String objectName) {
+      super(objectName + " was modified while being read");
+    }
+  }
+
+  /**
+   * Content of a range of a vectored read, sliced from the content
+   * of the combined range. The combined range is shared, thus
+   * the range can't be cancelled on its own
+   */
+  private static class RangeFuture implements Future<ByteBuffer> {
+    private final Future<byte[]> content;
+    private final int offset;
+    private final int length;
+
+    RangeFuture(Future<byte[]> combinedContent, int rangeOffset, int rangeLength) {
+      content = combinedContent;
+      offset = rangeOffset;
+      length = rangeLength;
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return content.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+      return content.isDone();
+    }
+
+    @Override
+    public ByteBuffer get() throws InterruptedException, ExecutionException {
+      return slice(content.get());
+    }
+
+    @Override
+    public ByteBuffer get(long timeout, TimeUnit unit)
+        throws InterruptedException, ExecutionException, TimeoutException {
+      return slice(content.get(timeout, unit));
+    }
+
+    private ByteBuffer slice(byte[] data) throws ExecutionException {
+      if (offset + length > data.length) {
+        throw new ExecutionException(new EOFException("Range beyond the end of the object"));
+      }
+      return ByteBuffer.wrap(data, offset, length).slice();
+    }
+  }
 }
@@ -17,17 +17,34 @@
 
 package com.ibm.stocator.fs.swift;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.net.HttpURLConnection;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  *
- * Wraps OutputStream
+ * Streams the content written to it as the chunked body of a PUT request.
+ * The request is sent in background over a pooled keep-alive connection,
+ * its body is read from a pipe filled by the writer. A stream left
+ * without a write for longer than the read timeout is abandoned: its
+ * request fails and its connection is released.
  * This class is not thread-safe
  *
  */
@@ -37,84 +54,212 @@ public class SwiftOutputStream extends OutputStream {
    */
   private static final Logger LOG = LoggerFactory.getLogger(SwiftOutputStream.class);
   /*
-   * Streaming chunk size
+   * Streaming chunk size, the size of the pipe to the request
    */
   private static final int STREAMING_CHUNK = 8 * 1024 * 1024;
+  /*
+   * Size of the writes to the pipe
+   */
+  private static final int WRITE_BUFFER_SIZE = 64 * 1024;
   /*
    * Read time out
    */
   private static final int READ_TIMEOUT = 100 * 1000;
   /*
-   * Output stream
+   * Output stream, null once closed
    */
   private OutputStream mOutputStream;
   /*
-   * HTTP connection object
+   * Body of the request, read from the pipe by the request
+   */
+  private final BodyInputStream mBody = new BodyInputStream();
+  /*
+   * Response of the request
    */
-  private HttpURLConnection mHttpCon;
+  private final Future<Integer> mResponse;
 
   /**
-   * Default constructor
+   * Default constructor. Sends the request, its body is sent as it is
+   * written
    *
-   * @param httpCon
-   * @throws IOException
+   * @param httpClient HTTP client with the connection pool
+   * @param request PUT request with its headers set
+   * @param executor executor that sends the request
+   * @throws IOException if failed to create the body of the request
    */
-  public SwiftOutputStream(HttpURLConnection httpCon) throws IOException {
-    try {
-      httpCon.setDoInput(true);
-      httpCon.setRequestProperty("Connection", "close");
-      httpCon.setReadTimeout(READ_TIMEOUT);
-      httpCon.setRequestProperty("Transfer-Encoding","chunked");
-      httpCon.setDoOutput(true);
-      httpCon.setChunkedStreamingMode(STREAMING_CHUNK);
-      mOutputStream  = httpCon.getOutputStream();
-      mHttpCon = httpCon;
-    } catch (IOException e) {
-      LOG.error(e.getMessage());
-      throw e;
-    }
+  public SwiftOutputStream(final HttpClient httpClient, final HttpPut request,
+      ExecutorService executor) throws IOException {
+    request.setConfig(RequestConfig.custom().setSocketTimeout(READ_TIMEOUT).build());
+    InputStreamEntity entity = new InputStreamEntity(mBody, -1);
+    entity.setChunked(true);
+    request.setEntity(entity);
+    mOutputStream = new BufferedOutputStream(new PipedOutputStream(mBody), WRITE_BUFFER_SIZE);
+    mResponse = executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() throws Exception {
+        try {
+          HttpResponse response = httpClient.execute(request);
+          // Status 400 and up are errors
+          // Expecting here 201 Create or 202 Accepted
+          EntityUtils.consume(response.getEntity());
+          return Integer.valueOf(response.getStatusLine().getStatusCode());
+        } finally {
+          // the writes fail from now on, instead of waiting for the pipe
+          mBody.close();
+        }
+      }
+    });
   }
 
   @Override
   public void write(int b) throws IOException {
-    mOutputStream.write(b);
+    try {
+      getOutputStream().write(b);
+    } catch (IOException e) {
+      throw failure(e);
+    }
   }
 
   @Override
   public void write(byte[] b, int off, int len) throws IOException {
-    mOutputStream.write(b, off, len);
+    try {
+      getOutputStream().write(b, off, len);
+    } catch (IOException e) {
+      throw failure(e);
+    }
   }
 
   @Override
   public void write(byte[] b) throws IOException {
-    mOutputStream.write(b);
+    write(b, 0, b.length);
   }
 
   @Override
   public void close() throws IOException {
-    mOutputStream.close();
-    InputStream is = null;
+    if (mOutputStream == null) {
+      return;
+    }
+    OutputStream out = mOutputStream;
+    mOutputStream = null;
+    mBody.writerClosed();
     try {
-      // Status 400 and up should be read from error stream
-      // Expecting here 201 Create or 202 Accepted
-      if (mHttpCon.getResponseCode() >= 400) {
-        is = mHttpCon.getErrorStream();
-      } else {
-        is = mHttpCon.getInputStream();
-      }
-      is.close();
-    } catch (Exception e) {
-      if (is != null) {
-        is.close();
-      }
-      LOG.error(e.getMessage());
-      throw e;
+      out.close();
+    } catch (IOException e) {
+      throw failure(e);
     }
-    mHttpCon.disconnect();
+    checkResponse();
   }
 
   @Override
   public void flush() throws IOException {
-    mOutputStream.flush();
+    try {
+      getOutputStream().flush();
+    } catch (IOException e) {
+      throw failure(e);
+    }
+  }
+
+  /**
+   * @return output stream of the body
+   * @throws IOException if closed
+   */
+  private OutputStream getOutputStream() throws IOException {
+    if (mOutputStream == null) {
+      throw new IOException("Stream closed");
+    }
+    return mOutputStream;
+  }
+
+  /**
+   * The body can't be written once the request completed, its failure is
+   * reported instead of the closed pipe
+   *
+   * @param e failure of a write
+   * @return the failure to throw
+   * @throws IOException if the request failed
+   */
+  private IOException failure(IOException e) throws IOException {
+    if (mResponse.isDone()) {
+      checkResponse();
+    }
+    return e;
+  }
+
+  /**
+   * Waits for the response of the request
+   *
+   * @throws IOException if the request failed
+   */
+  private void checkResponse() throws IOException {
+    int status;
+    try {
+      status = mResponse.get().intValue();
+    } catch (InterruptedException e) {
+      throw new InterruptedIOException("Interrupted while waiting for the PUT response");
+    } catch (ExecutionException e) {
+      LOG.error(e.getCause().getMessage());
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+    if (status >= 400) {
+      LOG.error("PUT failed with status {}", status);
+      throw new IOException("PUT failed with status " + status);
+    }
+  }
+
+  /**
+   * Pipe read by the request. A read waits at most the read timeout for the
+   * writer, a stream that isn't written nor closed then fails its request
+   */
+  private static final class BodyInputStream extends PipedInputStream {
+    /*
+     * True once the writer closes the stream
+     */
+    private volatile boolean writerClosed;
+
+    private BodyInputStream() {
+      super(STREAMING_CHUNK);
+    }
+
+    @Override
+    public synchronized int read() throws IOException {
+      awaitWrite();
+      return super.read();
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) throws IOException {
+      awaitWrite();
+      return super.read(b, off, len);
+    }
+
+    private void writerClosed() {
+      writerClosed = true;
+    }
+
+    /**
+     * Waits for bytes in the pipe, or for the writer to close it
+     *
+     * @throws IOException if nothing was written for the read timeout
+     */
+    private void awaitWrite() throws IOException {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(READ_TIMEOUT);
+      while (in < 0 && !writerClosed) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        if (millis <= 0) {
+          throw new IOException("PUT body not written for " + READ_TIMEOUT
+              + " ms, the output stream was not closed");
+        }
+        try {
+          // wakes up a writer waiting for the pipe to be read
+          notifyAll();
+          wait(Math.min(millis, 1000));
+        } catch (InterruptedException e) {
+          throw new InterruptedIOException("Interrupted while reading the PUT body");
+        }
+      }
+    }
   }
 }
@@ -0,0 +1,292 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads ahead the block ranges that follow the range currently consumed
+ * by a {@link SwiftInputStream}.
+ * The HTTP stream of every prefetched range is opened in background and
+ * at most bufferSize bytes of its head are buffered in memory. The rest
+ * of the range is streamed from the already opened connection once the
+ * reader gets there. The memory used per input stream is bounded by
+ * depth * bufferSize. Cancelled ranges are aborted, not drained.
+ *
+ * This class is not thread-safe, the owning input stream
+ * is responsible for the synchronization
+ */
+class SwiftPrefetcher {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(SwiftPrefetcher.class);
+  /*
+   * Input stream the ranges are prefetched for
+   */
+  private final SwiftInputStream source;
+  /*
+   * Thread pool that executes the prefetch tasks
+   */
+  private final ExecutorService executor;
+  /*
+   * Max number of ranges prefetched ahead
+   */
+  private final int depth;
+  /*
+   * Max bytes buffered in memory per prefetched range
+   */
+  private final int bufferSize;
+  /*
+   * Size of every prefetched range
+   */
+  private final long rangeSize;
+  /*
+   * Length of the object
+   */
+  private final long objectLength;
+  /*
+   * Prefetched ranges, ordered by their start offset
+   */
+  private final LinkedList<PrefetchTask> pending = new LinkedList<PrefetchTask>();
+
+  /**
+   * Constructor
+   *
+   * @param sourceStream input stream the ranges are prefetched for
+   * @param threadPool thread pool that executes the prefetch tasks
+   * @param prefetchDepth max number of ranges prefetched ahead
+   * @param prefetchBufferSize max bytes buffered in memory per range
+   * @param prefetchRangeSize size of every prefetched range
+   * @param length length of the object
+   */
+  SwiftPrefetcher(SwiftInputStream sourceStream, ExecutorService threadPool,
+      int prefetchDepth, int prefetchBufferSize, long prefetchRangeSize, long length) {
+    source = sourceStream;
+    executor = threadPool;
+    depth = prefetchDepth;
+    bufferSize = prefetchBufferSize;
+    rangeSize = prefetchRangeSize;
+    objectLength = length;
+  }
+
+  /**
+   * Makes sure that up to depth ranges starting at the given offset are
+   * prefetched. Ranges that do not follow the given offset are cancelled
+   *
+   * @param from offset of the first byte to prefetch
+   */
+  void prefetch(long from) {
+    if (!pending.isEmpty() && pending.getFirst().start != from) {
+      cancel();
+    }
+    long next = pending.isEmpty() ? from : pending.getLast().end + 1;
+    while (pending.size() < depth && next < objectLength) {
+      PrefetchTask task = new PrefetchTask(next, next + rangeSize);
+      LOG.trace("Prefetch range {} - {} of {}", task.start, task.end, source);
+      task.future = executor.submit(task);
+      pending.add(task);
+      next = task.end + 1;
+    }
+  }
+
+  /**
+   * Makes sure that the single range between the given offsets is
+   * prefetched. Ranges that do not start at the given offset are cancelled
+   *
+   * @param from offset of the first byte to prefetch
+   * @param to offset of the last byte to prefetch (inclusive)
+   */
+  void prefetch(long from, long to) {
+    if (!pending.isEmpty() && pending.getFirst().start == from) {
+      return;
+    }
+    cancel();
+    PrefetchTask task = new PrefetchTask(from, to);
+    LOG.trace("Prefetch range {} - {} of {}", task.start, task.end, source);
+    task.future = executor.submit(task);
+    pending.add(task);
+  }
+
+  /**
+   * Hands over the prefetched range that starts at the given position.
+   * If there is no such range, all the prefetched ranges are cancelled
+   *
+   * @param position offset of the first byte required by the reader
+   * @return prefetched range or null if not available
+   * @throws IOException if the wait for the prefetched range was interrupted
+   */
+  PrefetchedRange take(long position) throws IOException {
+    if (pending.isEmpty() || pending.getFirst().start != position) {
+      cancel();
+      return null;
+    }
+    PrefetchTask task = pending.removeFirst();
+    try {
+      return new PrefetchedRange(task.start, task.end, task.future.get());
+    } catch (InterruptedException e) {
+      task.cancel();
+      throw new InterruptedIOException("Interrupted while waiting for prefetched range "
+          + task.start);
+    } catch (ExecutionException e) {
+      // the range will be requested again by the reader
+      LOG.debug("Prefetch of range {} - {} failed: {}", task.start, task.end,
+          e.getCause().getMessage());
+      cancel();
+      return null;
+    }
+  }
+
+  /**
+   * Cancels all the prefetched ranges and releases their HTTP streams
+   */
+  void cancel() {
+    for (PrefetchTask task : pending) {
+      task.cancel();
+    }
+    pending.clear();
+  }
+
+  /**
+   * Range whose HTTP stream was opened in advance
+   */
+  static final class PrefetchedRange {
+    private final long start;
+    private final long end;
+    private final InputStream stream;
+
+    private PrefetchedRange(long rangeStart, long rangeEnd, InputStream rangeStream) {
+      start = rangeStart;
+      end = rangeEnd;
+      stream = rangeStream;
+    }
+
+    long getStart() {
+      return start;
+    }
+
+    /**
+     * @return offset of the last byte of the range (inclusive)
+     */
+    long getEnd() {
+      return end;
+    }
+
+    InputStream getStream() {
+      return stream;
+    }
+  }
+
+  /**
+   * Opens the HTTP stream of a single range and buffers its head
+   */
+  private final class PrefetchTask implements Callable<InputStream> {
+    private final long start;
+    private final long end;
+    private Future<InputStream> future;
+    private RangeStream result;
+    private boolean cancelled;
+
+    private PrefetchTask(long rangeStart, long rangeEnd) {
+      start = rangeStart;
+      end = rangeEnd;
+    }
+
+    @Override
+    public InputStream call() throws Exception {
+      InputStream in = source.openRange(start, end);
+      byte[] head = new byte[(int) Math.min(bufferSize, end - start + 1)];
+      int len = 0;
+      int read = 0;
+      try {
+        while (len < head.length && (read = in.read(head, len, head.length - len)) > 0) {
+          len += read;
+        }
+      } catch (IOException | RuntimeException e) {
+        // the failed response isn't handed over, its connection is released here
+        abort(in);
+        throw e;
+      }
+      RangeStream rangeStream = new RangeStream(head, len, in);
+      synchronized (this) {
+        if (cancelled) {
+          rangeStream.abort();
+        } else {
+          result = rangeStream;
+        }
+      }
+      return rangeStream;
+    }
+
+    private synchronized void cancel() {
+      cancelled = true;
+      future.cancel(false);
+      if (result != null) {
+        try {
+          result.abort();
+        } catch (IOException e) {
+          LOG.debug("Failed to close prefetched range {}: {}", start, e.getMessage());
+        }
+        result = null;
+      }
+    }
+  }
+
+  /**
+   * Buffered head of a prefetched range, followed by the rest of its HTTP stream
+   */
+  private static final class RangeStream extends SequenceInputStream implements Abortable {
+    private final InputStream rest;
+
+    private RangeStream(byte[] head, int len, InputStream httpStream) {
+      super(new ByteArrayInputStream(head, 0, len), httpStream);
+      rest = httpStream;
+    }
+
+    @Override
+    public void abort() throws IOException {
+      SwiftPrefetcher.abort(rest);
+    }
+  }
+
+  /**
+   * Releases an HTTP stream without reading the rest of its response
+   *
+   * @param in HTTP stream
+   * @throws IOException if failed to close the stream
+   */
+  private static void abort(InputStream in) throws IOException {
+    if (in instanceof Abortable) {
+      ((Abortable) in).abort();
+    } else {
+      in.close();
+    }
+  }
+}
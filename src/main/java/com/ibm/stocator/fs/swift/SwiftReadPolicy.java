@@ -0,0 +1,136 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+/**
+ * Sizes the ranges requested by an input stream according to its read pattern.
+ * Sequential reads request ranges of a block, random reads request small
+ * ranges, so a seek reads little of the previous range. Ranges are bounded
+ * even when read sequentially: a range released before its end is either
+ * drained or its connection closed. The adaptive mode starts sequential,
+ * switches to random reads on the first seek that requires a new request and
+ * back to sequential reads once consecutive ranges are read to their end.
+ *
+ * This class is not thread-safe
+ */
+public class SwiftReadPolicy {
+  /*
+   * Number of consecutive ranges read to their end that switch an adaptive
+   * stream back to sequential reads
+   */
+  public static final int SEQUENTIAL_RANGES = 2;
+
+  /**
+   * Read pattern of a stream
+   */
+  public enum Mode {
+    SEQUENTIAL, RANDOM, ADAPTIVE;
+
+    /**
+     * @param value name of the mode, case insensitive
+     * @return mode
+     * @throws IllegalArgumentException if the mode is unknown
+     */
+    public static Mode fromString(String value) {
+      return valueOf(value.trim().toUpperCase());
+    }
+  }
+
+  /*
+   * Configured mode
+   */
+  private final Mode mode;
+  /*
+   * Size of the ranges requested by random reads
+   */
+  private final long randomRangeSize;
+  /*
+   * Size of the ranges requested by sequential reads
+   */
+  private final long sequentialRangeSize;
+  /*
+   * True while random reads are detected or configured
+   */
+  private boolean random;
+  /*
+   * Consecutive ranges read to their end since the last seek
+   */
+  private int sequentialRanges;
+
+  /**
+   * Constructor
+   *
+   * @param policyMode configured mode
+   * @param rangeSize size of the ranges requested by random reads
+   * @param blockSize size of the ranges requested by sequential reads
+   */
+  public SwiftReadPolicy(Mode policyMode, long rangeSize, long blockSize) {
+    mode = policyMode;
+    randomRangeSize = rangeSize;
+    sequentialRangeSize = blockSize;
+    random = mode == Mode.RANDOM;
+  }
+
+  /**
+   * Records a seek that could not be served by the current HTTP stream
+   */
+  public void seekRequested() {
+    sequentialRanges = 0;
+    if (mode == Mode.ADAPTIVE) {
+      random = true;
+    }
+  }
+
+  /**
+   * Records a range read to its end and continued with the next one
+   */
+  public void rangeContinued() {
+    sequentialRanges++;
+    if (mode == Mode.ADAPTIVE && random && sequentialRanges >= SEQUENTIAL_RANGES) {
+      random = false;
+    }
+  }
+
+  /**
+   * @return true if the stream is read randomly
+   */
+  public boolean isRandom() {
+    return random;
+  }
+
+  /**
+   * The range that follows the current one is likely read if the stream is
+   * read sequentially, or if a range was read to its end since the last seek
+   *
+   * @return true if the next range may be requested before it is read
+   */
+  public boolean isNextRangeExpected() {
+    return !random || sequentialRanges > 0;
+  }
+
+  /**
+   * Last byte of the range to request
+   *
+   * @param from offset of the first byte of the range
+   * @param length length of the object
+   * @return offset of the last byte of the range (inclusive)
+   */
+  public long getRangeEnd(long from, long length) {
+    return Math.min(from + (random ? randomRangeSize : sequentialRangeSize), length) - 1;
+  }
+}
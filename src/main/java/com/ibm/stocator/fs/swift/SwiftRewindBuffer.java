@@ -0,0 +1,230 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Ring buffer of the bytes most recently read from a stream, so a short
+ * backward seek is replayed from memory instead of a new request.
+ * The recorded bytes are the contiguous range that ends at the last byte
+ * read. Bytes read again while replaying are not recorded twice, a read
+ * that doesn't follow the recorded range restarts it.
+ * The ring is allocated on the first record.
+ *
+ * This class is not thread-safe
+ */
+public class SwiftRewindBuffer {
+  /*
+   * Max number of recorded bytes, 0 if disabled
+   */
+  private final int capacity;
+  /*
+   * Recorded bytes, the byte at offset o is at index o % capacity
+   */
+  private byte[] ring;
+  /*
+   * Offset following the last recorded byte
+   */
+  private long end;
+  /*
+   * Number of recorded bytes
+   */
+  private int size;
+
+  /**
+   * Constructor
+   *
+   * @param bufferSize max number of recorded bytes, 0 to disable
+   */
+  public SwiftRewindBuffer(int bufferSize) {
+    capacity = bufferSize;
+  }
+
+  /**
+   * Records a byte read from the stream
+   *
+   * @param position offset of the byte
+   * @param b the byte
+   */
+  public void record(long position, int b) {
+    if (accept(position, 1) == 0) {
+      ring[(int) (position % capacity)] = (byte) b;
+      end = position + 1;
+      size = Math.min(size + 1, capacity);
+    }
+  }
+
+  /**
+   * Records bytes read from the stream
+   *
+   * @param position offset of the first byte
+   * @param b buffer the bytes were read into
+   * @param off offset of the first byte in the buffer
+   * @param len number of bytes read
+   */
+  public void record(long position, byte[] b, int off, int len) {
+    int skip = accept(position, len);
+    if (skip < 0) {
+      return;
+    }
+    // only the last bytes fit in the ring
+    skip = Math.max(skip, len - capacity);
+    long offset = position + skip;
+    int remaining = len - skip;
+    int from = off + skip;
+    while (remaining > 0) {
+      int index = (int) (offset % capacity);
+      int bytes = Math.min(remaining, capacity - index);
+      System.arraycopy(b, from, ring, index, bytes);
+      offset += bytes;
+      from += bytes;
+      remaining -= bytes;
+    }
+    appended(position + len);
+  }
+
+  /**
+   * Records bytes read from the stream into a byte buffer
+   *
+   * @param position offset of the first byte
+   * @param data bytes read, between the position and the limit of the buffer
+   */
+  public void record(long position, ByteBuffer data) {
+    int len = data.remaining();
+    int skip = accept(position, len);
+    if (skip < 0) {
+      return;
+    }
+    skip = Math.max(skip, len - capacity);
+    data.position(data.position() + skip);
+    long offset = position + skip;
+    while (data.hasRemaining()) {
+      int index = (int) (offset % capacity);
+      int bytes = Math.min(data.remaining(), capacity - index);
+      data.get(ring, index, bytes);
+      offset += bytes;
+    }
+    appended(position + len);
+  }
+
+  /**
+   * @param position offset in the stream
+   * @return true if the byte at the offset is recorded
+   */
+  public boolean contains(long position) {
+    return position < end && position >= end - size;
+  }
+
+  /**
+   * @return offset following the last recorded byte
+   */
+  public long getEnd() {
+    return end;
+  }
+
+  /**
+   * Restarts the recorded range at an offset, unless it ends there
+   *
+   * @param position offset the next read starts from
+   */
+  public void reset(long position) {
+    if (position != end) {
+      end = position;
+      size = 0;
+    }
+  }
+
+  /**
+   * Drops the recorded bytes and releases the ring
+   */
+  public void release() {
+    ring = null;
+    size = 0;
+  }
+
+  /**
+   * Stream of the recorded bytes from an offset to the last one. Valid until
+   * bytes that follow the recorded range are recorded
+   *
+   * @param from offset of the first byte, recorded
+   * @return stream of the recorded bytes
+   */
+  public InputStream replay(final long from) {
+    final long replayEnd = end;
+    return new InputStream() {
+      private long offset = from;
+
+      @Override
+      public int read() {
+        if (offset >= replayEnd) {
+          return -1;
+        }
+        return ring[(int) (offset++ % capacity)] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+          return 0;
+        }
+        if (offset >= replayEnd) {
+          return -1;
+        }
+        int index = (int) (offset % capacity);
+        int bytes = (int) Math.min(Math.min(len, replayEnd - offset), capacity - index);
+        System.arraycopy(ring, index, b, off, bytes);
+        offset += bytes;
+        return bytes;
+      }
+
+      @Override
+      public int available() {
+        return (int) Math.min(replayEnd - offset, Integer.MAX_VALUE);
+      }
+    };
+  }
+
+  /**
+   * Number of leading bytes of a read that are already recorded
+   *
+   * @param position offset of the first byte read
+   * @param len number of bytes read
+   * @return number of bytes to skip, -1 if none of the bytes must be recorded
+   */
+  private int accept(long position, int len) {
+    if (capacity <= 0 || len <= 0 || position + len <= end) {
+      return -1;
+    }
+    if (ring == null) {
+      ring = new byte[capacity];
+    }
+    if (position > end || position < end - size) {
+      // doesn't follow the recorded range
+      end = position;
+      size = 0;
+    }
+    return (int) (end - position);
+  }
+
+  private void appended(long newEnd) {
+    size = (int) Math.min(size + newEnd - end, capacity);
+    end = newEnd;
+  }
+}
@@ -0,0 +1,117 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+/**
+ * Decides whether a forward seek should read and discard the bytes up to the
+ * target position on the current HTTP stream, or close it and open a new one.
+ * Draining costs gap / bandwidth, a new request costs its latency. Both are
+ * measured on the stream, so the cut-over point is the number of bytes that
+ * can be transferred during one request round-trip.
+ *
+ * This class is not thread-safe
+ */
+public class SwiftSeekPolicy {
+  /*
+   * Threshold used until both bandwidth and latency were measured
+   */
+  public static final long DEFAULT_SKIP_THRESHOLD = 1024 * 1024;  // 1 MB
+  /*
+   * Smallest threshold. Below it draining is always cheaper than a new request
+   */
+  public static final long MIN_SKIP_THRESHOLD = 64 * 1024;  // 64 KB
+  /*
+   * Weight of the last request in the average latency
+   */
+  private static final double LATENCY_WEIGHT = 0.3;
+  /*
+   * Largest threshold
+   */
+  private final long maxSkipThreshold;
+  /*
+   * Average latency of a new request, in nanoseconds
+   */
+  private double requestLatency = -1;
+  /*
+   * Total bytes read from the HTTP streams
+   */
+  private long bytesRead;
+  /*
+   * Total time spent reading the HTTP streams, in nanoseconds
+   */
+  private long readTime;
+
+  /**
+   * Constructor
+   *
+   * @param maxThreshold largest gap that may be drained
+   */
+  public SwiftSeekPolicy(long maxThreshold) {
+    maxSkipThreshold = maxThreshold;
+  }
+
+  /**
+   * Records the latency of a new request
+   *
+   * @param nanos time spent until the HTTP stream was opened
+   */
+  public void requestCompleted(long nanos) {
+    if (requestLatency < 0) {
+      requestLatency = nanos;
+    } else {
+      requestLatency = LATENCY_WEIGHT * nanos + (1 - LATENCY_WEIGHT) * requestLatency;
+    }
+  }
+
+  /**
+   * Records a read from the HTTP stream
+   *
+   * @param bytes number of bytes read
+   * @param nanos time spent in the read
+   */
+  public void bytesRead(long bytes, long nanos) {
+    if (bytes > 0) {
+      bytesRead += bytes;
+      readTime += nanos;
+    }
+  }
+
+  /**
+   * Largest forward gap that is cheaper to drain than to request again
+   *
+   * @return threshold in bytes
+   */
+  public long getSkipThreshold() {
+    long threshold;
+    if (requestLatency < 0 || readTime <= 0) {
+      threshold = DEFAULT_SKIP_THRESHOLD;
+    } else {
+      // bytes transferred during one request round-trip
+      threshold = (long) (requestLatency * bytesRead / readTime);
+    }
+    return Math.min(maxSkipThreshold, Math.max(MIN_SKIP_THRESHOLD, threshold));
+  }
+
+  /**
+   * @param gap number of bytes between the current and the target position
+   * @return true if the gap should be drained from the current HTTP stream
+   */
+  public boolean shouldSkip(long gap) {
+    return gap <= getSkipThreshold();
+  }
+}
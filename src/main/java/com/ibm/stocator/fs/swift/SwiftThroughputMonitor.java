@@ -0,0 +1,100 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detects an HTTP stream that stays connected but delivers its content
+ * slower than a throughput floor. The throughput is measured over windows
+ * of time spent in the reads, so a slow consumer is not mistaken for
+ * a slow server.
+ *
+ * This class is not thread-safe
+ */
+public class SwiftThroughputMonitor {
+  /*
+   * Min throughput in bytes per second, 0 if disabled
+   */
+  private final long minThroughput;
+  /*
+   * Read time of a window in nanoseconds
+   */
+  private final long window;
+  /*
+   * Bytes read in the current window
+   */
+  private long bytes;
+  /*
+   * Read time of the current window in nanoseconds
+   */
+  private long nanos;
+  /*
+   * Number of consecutive windows below the floor
+   */
+  private int stalls;
+
+  /**
+   * Constructor
+   *
+   * @param minBytesPerSecond min throughput in bytes per second, 0 to disable
+   * @param windowMillis read time of a measured window in milliseconds
+   */
+  public SwiftThroughputMonitor(long minBytesPerSecond, long windowMillis) {
+    minThroughput = minBytesPerSecond;
+    window = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+  }
+
+  /**
+   * Records a read from the stream
+   *
+   * @param readBytes number of bytes read
+   * @param readNanos duration of the read in nanoseconds
+   * @return true if the read completed a window below the floor
+   */
+  public boolean bytesRead(long readBytes, long readNanos) {
+    if (minThroughput <= 0) {
+      return false;
+    }
+    bytes += readBytes;
+    nanos += readNanos;
+    if (nanos < window) {
+      return false;
+    }
+    boolean stalled = bytes * TimeUnit.SECONDS.toNanos(1) < minThroughput * nanos;
+    stalls = stalled ? stalls + 1 : 0;
+    bytes = 0;
+    nanos = 0;
+    return stalled;
+  }
+
+  /**
+   * Starts a new window, when the stream is replaced
+   */
+  public void reset() {
+    bytes = 0;
+    nanos = 0;
+  }
+
+  /**
+   * @return number of consecutive windows below the floor
+   */
+  public int getStalls() {
+    return stalls;
+  }
+}
@@ -0,0 +1,261 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift.cache;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Node local cache of object blocks, stored as files in a local directory.
+ * Hits are served from memory mapped files. The total size of the cached
+ * blocks is bounded, the least recently used blocks are evicted first.
+ * The directory content is indexed on start, so cached blocks survive
+ * the JVM that downloaded them.
+ * The size is bounded per JVM: the processes sharing a directory each
+ * index and evict the blocks on their own, so the directory may hold up to
+ * the sum of their max sizes. Each process should be given its share.
+ *
+ * A single instance is used per directory in the JVM. This class is thread-safe
+ */
+public class DiskBlockCache {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(DiskBlockCache.class);
+  /*
+   * Suffix of the files being written
+   */
+  private static final String TMP_SUFFIX = ".tmp";
+  /*
+   * Cache instances per directory
+   */
+  private static final Map<String, DiskBlockCache> CACHES = new HashMap<String, DiskBlockCache>();
+  /*
+   * Directory of the cached blocks
+   */
+  private final File directory;
+  /*
+   * Max total size of the cached blocks
+   */
+  private final long maxSize;
+  /*
+   * Cached file names and their size, in access order
+   */
+  private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(16,
+      0.75f, true);
+  /*
+   * Total size of the cached blocks
+   */
+  private long usedSize;
+
+  /**
+   * Cache instance of a directory. Created on first use
+   *
+   * @param dir directory of the cached blocks
+   * @param size max total size of the cached blocks
+   * @return cache instance
+   * @throws IOException if the directory can't be created
+   */
+  public static synchronized DiskBlockCache getInstance(String dir, long size)
+      throws IOException {
+    DiskBlockCache cache = CACHES.get(dir);
+    if (cache == null) {
+      cache = new DiskBlockCache(new File(dir), size);
+      CACHES.put(dir, cache);
+    }
+    return cache;
+  }
+
+  /**
+   * Constructor. Indexes the blocks already present in the directory
+   *
+   * @param dir directory of the cached blocks
+   * @param size max total size of the cached blocks
+   * @throws IOException if the directory can't be created
+   */
+  DiskBlockCache(File dir, long size) throws IOException {
+    directory = dir;
+    maxSize = size;
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Failed to create cache directory " + directory);
+    }
+    File[] files = directory.listFiles();
+    if (files != null) {
+      Arrays.sort(files, new Comparator<File>() {
+        @Override
+        public int compare(File f1, File f2) {
+          return Long.compare(f1.lastModified(), f2.lastModified());
+        }
+      });
+      for (File file : files) {
+        if (file.getName().endsWith(TMP_SUFFIX)) {
+          delete(file);
+        } else if (file.isFile()) {
+          entries.put(file.getName(), Long.valueOf(file.length()));
+          usedSize += file.length();
+        }
+      }
+    }
+    evict();
+    LOG.debug("Disk block cache {} with {} blocks, {} bytes", directory, entries.size(),
+        usedSize);
+  }
+
+  /**
+   * Get a cached block
+   *
+   * @param key key of the block
+   * @return memory mapped content of the block or null if not cached
+   */
+  public ByteBuffer get(String key) {
+    String name = fileName(key);
+    synchronized (this) {
+      if (entries.get(name) == null) {
+        return null;
+      }
+    }
+    try {
+      RandomAccessFile file = new RandomAccessFile(new File(directory, name), "r");
+      try {
+        FileChannel channel = file.getChannel();
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      } finally {
+        file.close();
+      }
+    } catch (IOException e) {
+      LOG.debug("Failed to map cached block {}: {}", name, e.getMessage());
+      synchronized (this) {
+        Long size = entries.remove(name);
+        if (size != null) {
+          usedSize -= size.longValue();
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Adds a block to the cache and evicts the least recently used blocks
+   * if the size limit is exceeded
+   *
+   * @param key key of the block
+   * @param data content of the block, between its position and limit
+   */
+  public void put(String key, ByteBuffer data) {
+    int length = data.remaining();
+    if (length > maxSize) {
+      return;
+    }
+    String name = fileName(key);
+    File file = new File(directory, name);
+    File tmp = new File(directory, name + "." + Thread.currentThread().getId() + TMP_SUFFIX);
+    try {
+      FileOutputStream out = new FileOutputStream(tmp);
+      try {
+        ByteBuffer content = data.duplicate();
+        FileChannel channel = out.getChannel();
+        while (content.hasRemaining()) {
+          channel.write(content);
+        }
+      } finally {
+        out.close();
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      LOG.warn("Failed to cache block {}: {}", name, e.getMessage());
+      delete(tmp);
+      return;
+    }
+    synchronized (this) {
+      Long previous = entries.put(name, Long.valueOf(length));
+      if (previous != null) {
+        usedSize -= previous.longValue();
+      }
+      usedSize += length;
+      evict();
+    }
+  }
+
+  /**
+   * @return total size of the cached blocks
+   */
+  public synchronized long getUsedSize() {
+    return usedSize;
+  }
+
+  /**
+   * Evicts the least recently used blocks until the size limit is respected
+   */
+  private synchronized void evict() {
+    Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+    while (usedSize > maxSize && it.hasNext()) {
+      Map.Entry<String, Long> eldest = it.next();
+      it.remove();
+      usedSize -= eldest.getValue().longValue();
+      LOG.trace("Evict cached block {}", eldest.getKey());
+      delete(new File(directory, eldest.getKey()));
+    }
+  }
+
+  private static void delete(File file) {
+    if (file.exists() && !file.delete()) {
+      LOG.debug("Failed to delete {}", file);
+    }
+  }
+
+  /**
+   * File name of a block. Keys contain object names, thus are hashed
+   *
+   * @param key key of the block
+   * @return file name of the block
+   */
+  private static String fileName(String key) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-1");
+      byte[] hash = digest.digest(key.getBytes("UTF-8"));
+      StringBuilder name = new StringBuilder(hash.length * 2);
+      for (byte b : hash) {
+        name.append(String.format("%02x", b & 0xFF));
+      }
+      return name.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,324 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift.cache;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JVM wide cache of object blocks, kept in direct (off-heap) buffers.
+ * Blocks are handed to the readers as reference counted {@link Block}s, a
+ * block evicted while still in use is freed once its last reader releases it.
+ * Concurrent requests of a missing block are collapsed into a single load.
+ * The bytes allocated by the cache are bounded by a budget, the least
+ * recently used blocks are evicted first. The budget may be exceeded only
+ * while all the resident blocks are in use.
+ * Buffers of the freed blocks are recycled for the next loads.
+ *
+ * This class is thread-safe
+ */
+public class MemoryBlockCache {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(MemoryBlockCache.class);
+  /*
+   * JVM wide instance
+   */
+  private static MemoryBlockCache sInstance;
+  /*
+   * Max bytes allocated by the cache
+   */
+  private final long budget;
+  /*
+   * Resident blocks, in access order
+   */
+  private final LinkedHashMap<String, Block> blocks = new LinkedHashMap<String, Block>(16,
+      0.75f, true);
+  /*
+   * Blocks being loaded
+   */
+  private final Map<String, FutureTask<Block>> loading = new HashMap<String, FutureTask<Block>>();
+  /*
+   * Buffers of the freed blocks, ready for reuse
+   */
+  private final LinkedList<ByteBuffer> freeBuffers = new LinkedList<ByteBuffer>();
+  /*
+   * Bytes of the blocks that are resident or in use
+   */
+  private long allocated;
+  /*
+   * Bytes of the buffers ready for reuse
+   */
+  private long freeBytes;
+  /*
+   * Number of requests served by a resident or loading block
+   */
+  private long hits;
+  /*
+   * Number of requests that loaded a block
+   */
+  private long misses;
+
+  /**
+   * Loads the content of a block
+   */
+  public interface BlockLoader {
+    /**
+     * Fills the buffer with the content of the block
+     *
+     * @param buffer buffer to fill, with exactly the size of the block remaining
+     * @throws IOException if failed to load the block
+     */
+    void load(ByteBuffer buffer) throws IOException;
+  }
+
+  /**
+   * JVM wide cache instance. Created on first use with the given budget
+   *
+   * @param size max bytes allocated by the cache
+   * @return cache instance
+   */
+  public static synchronized MemoryBlockCache getInstance(long size) {
+    if (sInstance == null) {
+      sInstance = new MemoryBlockCache(size);
+    }
+    return sInstance;
+  }
+
+  /**
+   * Constructor of a private cache. Streams share the JVM wide instance
+   *
+   * @param size max bytes allocated by the cache
+   */
+  public MemoryBlockCache(long size) {
+    budget = size;
+  }
+
+  /**
+   * Get a block, loading it if not resident. The returned block is
+   * retained for the caller and must be released once not used
+   *
+   * @param key key of the block
+   * @param size size of the block
+   * @param loader loads the content of the block if not resident
+   * @return retained block
+   * @throws IOException if failed to load the block
+   */
+  public Block get(String key, final int size, final BlockLoader loader) throws IOException {
+    if (size > budget) {
+      // would evict itself, the block is only used by the caller
+      Block block = load(size, loader);
+      synchronized (this) {
+        misses++;
+      }
+      return block;
+    }
+    while (true) {
+      FutureTask<Block> task;
+      boolean owner = false;
+      synchronized (this) {
+        Block block = blocks.get(key);
+        if (block != null) {
+          hits++;
+          block.retain();
+          return block;
+        }
+        task = loading.get(key);
+        if (task == null) {
+          misses++;
+          owner = true;
+          task = new FutureTask<Block>(new Callable<Block>() {
+            @Override
+            public Block call() throws Exception {
+              return load(size, loader);
+            }
+          });
+          loading.put(key, task);
+        } else {
+          hits++;
+        }
+      }
+      if (owner) {
+        task.run();
+      }
+      Block block;
+      try {
+        block = task.get();
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted while loading block " + key);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException("Failed to load block " + key, e.getCause());
+      } finally {
+        if (owner) {
+          synchronized (this) {
+            loading.remove(key);
+          }
+        }
+      }
+      synchronized (this) {
+        if (block.refCount > 0) {
+          block.retain();
+          if (owner) {
+            blocks.put(key, block);
+            evict();
+          }
+          return block;
+        }
+      }
+      // evicted and freed before this reader got it, request it again
+      LOG.trace("Block {} freed before use, reload", key);
+    }
+  }
+
+  /**
+   * @return number of requests served without loading
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of requests that loaded a block
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  /**
+   * @return bytes of the blocks that are resident or in use
+   */
+  public synchronized long getAllocated() {
+    return allocated;
+  }
+
+  /**
+   * Loads a block into a new or recycled direct buffer. The block is
+   * referenced once by the cache
+   */
+  private Block load(int size, BlockLoader loader) throws IOException {
+    ByteBuffer buffer = allocate(size);
+    boolean loaded = false;
+    try {
+      loader.load(buffer);
+      buffer.flip();
+      loaded = true;
+      return new Block(buffer);
+    } finally {
+      if (!loaded) {
+        free(buffer);
+      }
+    }
+  }
+
+  private synchronized ByteBuffer allocate(int size) {
+    allocated += size;
+    evict();
+    Iterator<ByteBuffer> it = freeBuffers.iterator();
+    while (it.hasNext()) {
+      ByteBuffer buffer = it.next();
+      if (buffer.capacity() >= size) {
+        it.remove();
+        freeBytes -= buffer.capacity();
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+      }
+    }
+    // free buffers are too small to be reused
+    freeBuffers.clear();
+    freeBytes = 0;
+    return ByteBuffer.allocateDirect(size);
+  }
+
+  private synchronized void free(ByteBuffer buffer) {
+    allocated -= buffer.limit();
+    if (allocated + freeBytes + buffer.capacity() <= budget) {
+      freeBuffers.add(buffer);
+      freeBytes += buffer.capacity();
+    }
+  }
+
+  /**
+   * Drops the cache reference of the least recently used blocks
+   * until the budget is respected
+   */
+  private synchronized void evict() {
+    Iterator<Map.Entry<String, Block>> it = blocks.entrySet().iterator();
+    while (allocated > budget && it.hasNext()) {
+      Map.Entry<String, Block> eldest = it.next();
+      it.remove();
+      LOG.trace("Evict block {}", eldest.getKey());
+      eldest.getValue().release();
+    }
+    while (allocated + freeBytes > budget && !freeBuffers.isEmpty()) {
+      freeBytes -= freeBuffers.removeFirst().capacity();
+    }
+  }
+
+  /**
+   * Reference counted block of the cache
+   */
+  public final class Block {
+    private final ByteBuffer buffer;
+    private int refCount = 1;
+
+    private Block(ByteBuffer content) {
+      buffer = content;
+    }
+
+    /**
+     * @return read only view of the block content, with an independent position
+     */
+    public ByteBuffer slice() {
+      return buffer.asReadOnlyBuffer();
+    }
+
+    private void retain() {
+      refCount++;
+    }
+
+    /**
+     * Releases a reference to the block. The block must not be used
+     * after its release
+     */
+    public void release() {
+      synchronized (MemoryBlockCache.this) {
+        refCount--;
+        if (refCount == 0) {
+          free(buffer);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,254 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.stocator.fs.swift.pushdown;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Evaluates a pushdown query on the raw bytes of a block of a CSV object,
+ * producing the output the CSV storlet would have produced for the block.
+ * Records are tokenized in place in the read buffer, only the selected
+ * fields of the kept records are copied.
+ *
+ * As the storlet, the records of a block are the ones that start in it.
+ * Unless it starts on a record, the range read for a block other than the
+ * first one starts with the delimiter that precedes it, the bytes up to the
+ * first delimiter belong to the previous block. The range ends after the
+ * block, so its last record is complete.
+ *
+ * This class is not thread-safe
+ */
+public class CsvFilterInputStream extends InputStream {
+  /*
+   * Initial size of the read buffer, grown to fit a record
+   */
+  private static final int BUFFER_SIZE = 65536;
+
+  /*
+   * Raw bytes of the range
+   */
+  private final InputStream in;
+  /*
+   * Projection and predicate of the query
+   */
+  private final CsvRecordFilter filter;
+  /*
+   * Bytes that end a record
+   */
+  private final byte[] delimiter;
+  /*
+   * Offset following the block in the object, records starting there
+   * belong to the next block
+   */
+  private final long blockEnd;
+  /*
+   * True until the bytes of the previous block are skipped
+   */
+  private boolean skipFirst;
+  /*
+   * Raw bytes read, the unprocessed ones between start and end
+   */
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private int start;
+  private int end;
+  /*
+   * Offset in the buffer from which the next delimiter is searched
+   */
+  private int scanned;
+  /*
+   * Offset in the object of the first byte of the buffer
+   */
+  private long bufferOffset;
+  /*
+   * True once the range was read to its end
+   */
+  private boolean eof;
+  /*
+   * True once all the records of the block were processed
+   */
+  private boolean done;
+  /*
+   * Bounds of the fields of the current record
+   */
+  private int[] fields = new int[64];
+  /*
+   * Output of the kept records, the unread bytes between outStart and outEnd
+   */
+  private byte[] out = new byte[BUFFER_SIZE];
+  private int outStart;
+  private int outEnd;
+
+  /**
+   * Constructor
+   *
+   * @param raw raw bytes of the range
+   * @param recordFilter projection and predicate of the query
+   * @param recordDelimiter bytes that end a record
+   * @param rangeStart offset in the object of the first byte of the range
+   * @param blockStart offset in the object of the first byte of the block
+   * @param blockSize size of the block
+   */
+  public CsvFilterInputStream(InputStream raw, CsvRecordFilter recordFilter,
+      byte[] recordDelimiter, long rangeStart, long blockStart, long blockSize) {
+    in = raw;
+    filter = recordFilter;
+    delimiter = recordDelimiter;
+    bufferOffset = rangeStart;
+    blockEnd = blockStart + blockSize;
+    skipFirst = blockStart > rangeStart;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (outStart == outEnd && !nextRecords()) {
+      return -1;
+    }
+    return out[outStart++] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) {
+      return 0;
+    }
+    if (outStart == outEnd && !nextRecords()) {
+      return -1;
+    }
+    int bytes = Math.min(len, outEnd - outStart);
+    System.arraycopy(out, outStart, b, off, bytes);
+    outStart += bytes;
+    return bytes;
+  }
+
+  @Override
+  public int available() {
+    return outEnd - outStart;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * Processes the records in the buffer, reading more of the range
+   * until some are kept
+   *
+   * @return false once all the records of the block were processed
+   * @throws IOException if failed to read the range
+   */
+  private boolean nextRecords() throws IOException {
+    outStart = 0;
+    outEnd = 0;
+    while (!done) {
+      int recordEnd = indexOfDelimiter();
+      if (recordEnd < 0 && !eof) {
+        if (outEnd > 0) {
+          break;
+        }
+        fill();
+        continue;
+      }
+      if (recordEnd < 0) {
+        // last record of the object, without delimiter
+        recordEnd = end;
+        done = true;
+        if (recordEnd == start) {
+          break;
+        }
+      }
+      int next = Math.min(recordEnd + delimiter.length, end);
+      if (skipFirst) {
+        skipFirst = false;
+      } else if (bufferOffset + start >= blockEnd) {
+        done = true;
+        break;
+      } else {
+        emit(start, recordEnd);
+      }
+      start = next;
+    }
+    return outEnd > 0;
+  }
+
+  /**
+   * Tokenizes a record and writes its selected fields if it is kept
+   */
+  private void emit(int recordStart, int recordEnd) {
+    fields = CsvRecordFilter.tokenize(buffer, recordStart, recordEnd, fields);
+    if (!filter.matches(buffer, fields)) {
+      return;
+    }
+    int length = filter.projectedLength(fields, recordEnd - recordStart) + delimiter.length;
+    if (outEnd + length > out.length) {
+      byte[] larger = new byte[Math.max(out.length * 2, outEnd + length)];
+      System.arraycopy(out, 0, larger, 0, outEnd);
+      out = larger;
+    }
+    outEnd = filter.project(buffer, recordStart, recordEnd, fields, out, outEnd);
+    System.arraycopy(delimiter, 0, out, outEnd, delimiter.length);
+    outEnd += delimiter.length;
+  }
+
+  /**
+   * @return offset of the next delimiter in the buffer, -1 if not read yet
+   */
+  private int indexOfDelimiter() {
+    byte first = delimiter[0];
+    int last = end - delimiter.length;
+    for (int i = Math.max(start, scanned); i <= last; i++) {
+      if (buffer[i] == first) {
+        int j = 1;
+        while (j < delimiter.length && buffer[i + j] == delimiter[j]) {
+          j++;
+        }
+        if (j == delimiter.length) {
+          return i;
+        }
+      }
+    }
+    // a delimiter may start in the bytes not read yet
+    scanned = Math.max(start, last + 1);
+    return -1;
+  }
+
+  /**
+   * Reads more bytes of the range. The unprocessed bytes are moved to the
+   * start of the buffer, which grows if full
+   */
+  private void fill() throws IOException {
+    if (start > 0) {
+      System.arraycopy(buffer, start, buffer, 0, end - start);
+      bufferOffset += start;
+      end -= start;
+      scanned -= start;
+      start = 0;
+    }
+    if (end == buffer.length) {
+      byte[] larger = new byte[buffer.length * 2];
+      System.arraycopy(buffer, 0, larger, 0, end);
+      buffer = larger;
+    }
+    int bytes = in.read(buffer, end, buffer.length - end);
+    if (bytes < 0) {
+      eof = true;
+    } else {
+      end += bytes;
+    }
+  }
+}
@@ -0,0 +1,500 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.stocator.fs.swift.pushdown;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+
+/**
+ * Projection and predicate of a pushdown query, evaluated on the bytes of
+ * a CSV record, with the semantics of the CSV storlet. Used when the storlet
+ * can't evaluate the query.
+ *
+ * Fields are referenced by their index from 0, as {@code 2} or {@code _c2}.
+ * The predicate is a tree of Spark filters:
+ * {@code And(p1,p2)}, {@code Or(p1,p2)}, {@code Not(p)}, {@code EqualTo(f,v)},
+ * {@code NotEqualTo(f,v)}, {@code GreaterThan(f,v)}, {@code GreaterThanOrEqual(f,v)},
+ * {@code LessThan(f,v)}, {@code LessThanOrEqual(f,v)}, {@code IsNull(f)},
+ * {@code IsNotNull(f)}, {@code StringStartsWith(f,v)}, {@code StringEndsWith(f,v)}
+ * and {@code StringContains(f,v)}. Values may be quoted. Fields and values
+ * are compared as numbers if both are numbers, as bytes otherwise.
+ *
+ * This class is immutable
+ */
+public final class CsvRecordFilter {
+  /*
+   * Separates the fields of a record
+   */
+  public static final byte FIELD_SEPARATOR = ',';
+  /*
+   * Quotes a field that contains separators
+   */
+  public static final byte QUOTE = '"';
+
+  /*
+   * Indexes of the selected fields, empty if all the fields are kept
+   */
+  private final int[] projection;
+  /*
+   * Predicate of the kept records, null if all the records are kept
+   */
+  private final Predicate predicate;
+
+  private CsvRecordFilter(int[] selectedFields, Predicate recordPredicate) {
+    projection = selectedFields;
+    predicate = recordPredicate;
+  }
+
+  /**
+   * Compiles the projection and predicate of a query
+   *
+   * @param query pushdown query
+   * @return filter of the records
+   * @throws IllegalArgumentException if the query can't be evaluated by the client
+   */
+  public static CsvRecordFilter compile(PushdownQuery query) {
+    if (!query.getParameters().isEmpty()) {
+      throw new IllegalArgumentException("Unsupported pushdown parameters "
+          + query.getParameters().keySet());
+    }
+    List<String> fields = query.getProjection();
+    int[] projection = new int[fields.size()];
+    for (int i = 0; i < projection.length; i++) {
+      projection[i] = fieldIndex(fields.get(i));
+    }
+    Predicate predicate = null;
+    if (query.getPredicate() != null) {
+      Parser parser = new Parser(query.getPredicate());
+      predicate = parser.predicate();
+      parser.end();
+    }
+    return new CsvRecordFilter(projection, predicate);
+  }
+
+  /**
+   * Splits a record into its fields. Separators between quotes are part
+   * of the fields
+   *
+   * @param record buffer of the record
+   * @param start offset of the first byte of the record
+   * @param end offset following the last byte of the record
+   * @param bounds receives the number of fields at 0, the start of field i
+   *        at 2i + 1 and its end at 2i + 2. Grown if too small
+   * @return bounds of the fields, the given array if large enough
+   */
+  public static int[] tokenize(byte[] record, int start, int end, int[] bounds) {
+    int[] fields = bounds;
+    int count = 0;
+    int fieldStart = start;
+    boolean quoted = false;
+    for (int i = start; i <= end; i++) {
+      if (i < end && record[i] == QUOTE) {
+        quoted = !quoted;
+      } else if (i == end || (record[i] == FIELD_SEPARATOR && !quoted)) {
+        if (2 * count + 3 > fields.length) {
+          int[] larger = new int[Math.max(fields.length * 2, 2 * count + 3)];
+          System.arraycopy(fields, 0, larger, 0, 2 * count + 1);
+          fields = larger;
+        }
+        fields[2 * count + 1] = fieldStart;
+        fields[2 * count + 2] = i;
+        count++;
+        fieldStart = i + 1;
+      }
+    }
+    fields[0] = count;
+    return fields;
+  }
+
+  /**
+   * @param record buffer of the record
+   * @param fields bounds of the fields, from {@link #tokenize}
+   * @return true if the record is kept
+   */
+  public boolean matches(byte[] record, int[] fields) {
+    return predicate == null || predicate.matches(record, fields);
+  }
+
+  /**
+   * Size of the selected fields of a record, with their separators
+   *
+   * @param fields bounds of the fields, from {@link #tokenize}
+   * @param recordLength length of the whole record
+   * @return size of the projected record
+   */
+  public int projectedLength(int[] fields, int recordLength) {
+    if (projection.length == 0) {
+      return recordLength;
+    }
+    int length = projection.length - 1;
+    for (int index : projection) {
+      if (exists(fields, index)) {
+        length += fields[2 * index + 2] - fields[2 * index + 1];
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Writes the selected fields of a record, separated by FIELD_SEPARATOR.
+   * Missing fields are written empty
+   *
+   * @param record buffer of the record
+   * @param start offset of the first byte of the record
+   * @param end offset following the last byte of the record
+   * @param fields bounds of the fields, from {@link #tokenize}
+   * @param out buffer to write to, with at least {@link #projectedLength} bytes
+   * @param outPos offset in the buffer
+   * @return offset following the written bytes
+   */
+  public int project(byte[] record, int start, int end, int[] fields, byte[] out, int outPos) {
+    if (projection.length == 0) {
+      System.arraycopy(record, start, out, outPos, end - start);
+      return outPos + end - start;
+    }
+    int pos = outPos;
+    for (int i = 0; i < projection.length; i++) {
+      if (i > 0) {
+        out[pos++] = FIELD_SEPARATOR;
+      }
+      int index = projection[i];
+      if (exists(fields, index)) {
+        int length = fields[2 * index + 2] - fields[2 * index + 1];
+        System.arraycopy(record, fields[2 * index + 1], out, pos, length);
+        pos += length;
+      }
+    }
+    return pos;
+  }
+
+  private static boolean exists(int[] fields, int index) {
+    return index < fields[0];
+  }
+
+  private static int fieldIndex(String field) {
+    String index = field.trim();
+    if (index.startsWith("_c")) {
+      index = index.substring(2);
+    }
+    try {
+      int value = Integer.parseInt(index);
+      if (value >= 0) {
+        return value;
+      }
+    } catch (NumberFormatException e) {
+      // reported below
+    }
+    throw new IllegalArgumentException("Unsupported field reference " + field);
+  }
+
+  /**
+   * Predicate of a record
+   */
+  private abstract static class Predicate {
+    abstract boolean matches(byte[] record, int[] fields);
+  }
+
+  private static final class And extends Predicate {
+    private final Predicate left;
+    private final Predicate right;
+
+    And(Predicate leftPredicate, Predicate rightPredicate) {
+      left = leftPredicate;
+      right = rightPredicate;
+    }
+
+    @Override
+    boolean matches(byte[] record, int[] fields) {
+      return left.matches(record, fields) && right.matches(record, fields);
+    }
+  }
+
+  private static final class Or extends Predicate {
+    private final Predicate left;
+    private final Predicate right;
+
+    Or(Predicate leftPredicate, Predicate rightPredicate) {
+      left = leftPredicate;
+      right = rightPredicate;
+    }
+
+    @Override
+    boolean matches(byte[] record, int[] fields) {
+      return left.matches(record, fields) || right.matches(record, fields);
+    }
+  }
+
+  private static final class Not extends Predicate {
+    private final Predicate child;
+
+    Not(Predicate childPredicate) {
+      child = childPredicate;
+    }
+
+    @Override
+    boolean matches(byte[] record, int[] fields) {
+      return !child.matches(record, fields);
+    }
+  }
+
+  /**
+   * Predicate on the value of a field. A missing field is null
+   */
+  private static final class FieldPredicate extends Predicate {
+    private final String operator;
+    private final int index;
+    private final byte[] value;
+    private final double number;
+
+    FieldPredicate(String predicateOperator, int fieldIndex, String predicateValue) {
+      operator = predicateOperator;
+      index = fieldIndex;
+      value = predicateValue == null ? null : predicateValue.getBytes(StandardCharsets.UTF_8);
+      number = predicateValue == null ? Double.NaN : parseNumber(value, 0, value.length);
+    }
+
+    @Override
+    boolean matches(byte[] record, int[] fields) {
+      boolean exists = exists(fields, index);
+      int start = exists ? fields[2 * index + 1] : 0;
+      int end = exists ? fields[2 * index + 2] : 0;
+      if (end - start >= 2 && record[start] == QUOTE && record[end - 1] == QUOTE) {
+        start++;
+        end--;
+      }
+      boolean empty = end == start;
+      switch (operator) {
+        case "IsNull":
+          return empty;
+        case "IsNotNull":
+          return !empty;
+        case "StringStartsWith":
+          return regionMatches(record, start, end, start);
+        case "StringEndsWith":
+          return regionMatches(record, start, end, end - value.length);
+        case "StringContains":
+          for (int i = start; i <= end - value.length; i++) {
+            if (regionMatches(record, start, end, i)) {
+              return true;
+            }
+          }
+          return false;
+        default:
+          if (empty) {
+            return false;
+          }
+          int cmp = compare(record, start, end);
+          switch (operator) {
+            case "EqualTo":
+              return cmp == 0;
+            case "NotEqualTo":
+              return cmp != 0;
+            case "GreaterThan":
+              return cmp > 0;
+            case "GreaterThanOrEqual":
+              return cmp >= 0;
+            case "LessThan":
+              return cmp < 0;
+            default:
+              return cmp <= 0;
+          }
+      }
+    }
+
+    private boolean regionMatches(byte[] record, int start, int end, int from) {
+      if (from < start || from + value.length > end) {
+        return false;
+      }
+      for (int i = 0; i < value.length; i++) {
+        if (record[from + i] != value[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private int compare(byte[] record, int start, int end) {
+      if (!Double.isNaN(number)) {
+        double fieldNumber = parseNumber(record, start, end);
+        if (!Double.isNaN(fieldNumber)) {
+          return Double.compare(fieldNumber, number);
+        }
+      }
+      int length = Math.min(end - start, value.length);
+      for (int i = 0; i < length; i++) {
+        int diff = (record[start + i] & 0xFF) - (value[i] & 0xFF);
+        if (diff != 0) {
+          return diff;
+        }
+      }
+      return (end - start) - value.length;
+    }
+  }
+
+  /**
+   * Parses a number from bytes. Integers are parsed without allocation
+   *
+   * @return the number or NaN if the bytes are not a number
+   */
+  private static double parseNumber(byte[] bytes, int start, int end) {
+    int i = start;
+    while (i < end && bytes[i] == ' ') {
+      i++;
+    }
+    boolean negative = i < end && bytes[i] == '-';
+    if (negative || (i < end && bytes[i] == '+')) {
+      i++;
+    }
+    if (i == end || end - i > 18) {
+      return parseDecimal(bytes, start, end);
+    }
+    long result = 0;
+    for (; i < end; i++) {
+      int digit = bytes[i] - '0';
+      if (digit < 0 || digit > 9) {
+        return parseDecimal(bytes, start, end);
+      }
+      result = result * 10 + digit;
+    }
+    return negative ? -result : result;
+  }
+
+  private static double parseDecimal(byte[] bytes, int start, int end) {
+    for (int i = start; i < end; i++) {
+      byte b = bytes[i];
+      if ((b < '0' || b > '9') && b != '.' && b != '-' && b != '+' && b != 'e' && b != 'E'
+          && b != ' ') {
+        return Double.NaN;
+      }
+    }
+    try {
+      return Double.parseDouble(new String(bytes, start, end - start,
+          StandardCharsets.US_ASCII));
+    } catch (NumberFormatException e) {
+      return Double.NaN;
+    }
+  }
+
+  /**
+   * Recursive descent parser of the predicates
+   */
+  private static final class Parser {
+    private final String text;
+    private int pos;
+
+    Parser(String predicate) {
+      text = predicate;
+    }
+
+    Predicate predicate() {
+      String operator = name();
+      expect('(');
+      Predicate result;
+      switch (operator) {
+        case "And":
+        case "Or":
+          Predicate left = predicate();
+          expect(',');
+          Predicate right = predicate();
+          result = "And".equals(operator) ? new And(left, right) : new Or(left, right);
+          break;
+        case "Not":
+          result = new Not(predicate());
+          break;
+        case "IsNull":
+        case "IsNotNull":
+          result = new FieldPredicate(operator, fieldIndex(value()), null);
+          break;
+        case "EqualTo":
+        case "NotEqualTo":
+        case "GreaterThan":
+        case "GreaterThanOrEqual":
+        case "LessThan":
+        case "LessThanOrEqual":
+        case "StringStartsWith":
+        case "StringEndsWith":
+        case "StringContains":
+          int index = fieldIndex(value());
+          expect(',');
+          result = new FieldPredicate(operator, index, value());
+          break;
+        default:
+          throw error("Unsupported predicate " + operator);
+      }
+      expect(')');
+      return result;
+    }
+
+    void end() {
+      skipSpaces();
+      if (pos < text.length()) {
+        throw error("Unexpected characters");
+      }
+    }
+
+    private String name() {
+      skipSpaces();
+      int start = pos;
+      while (pos < text.length() && Character.isLetter(text.charAt(pos))) {
+        pos++;
+      }
+      return text.substring(start, pos);
+    }
+
+    /**
+     * @return next argument, without its quotes if quoted
+     */
+    private String value() {
+      skipSpaces();
+      if (pos < text.length() && (text.charAt(pos) == '\'' || text.charAt(pos) == '"')) {
+        char quote = text.charAt(pos);
+        int end = text.indexOf(quote, pos + 1);
+        if (end < 0) {
+          throw error("Unterminated quote");
+        }
+        String result = text.substring(pos + 1, end);
+        pos = end + 1;
+        return result;
+      }
+      int start = pos;
+      while (pos < text.length() && text.charAt(pos) != ',' && text.charAt(pos) != ')') {
+        pos++;
+      }
+      return text.substring(start, pos).trim();
+    }
+
+    private void expect(char c) {
+      skipSpaces();
+      if (pos >= text.length() || text.charAt(pos) != c) {
+        throw error("Expected '" + c + "'");
+      }
+      pos++;
+    }
+
+    private void skipSpaces() {
+      while (pos < text.length() && text.charAt(pos) == ' ') {
+        pos++;
+      }
+    }
+
+    private IllegalArgumentException error(String message) {
+      return new IllegalArgumentException(message + " at " + pos + " in predicate " + text);
+    }
+  }
+}
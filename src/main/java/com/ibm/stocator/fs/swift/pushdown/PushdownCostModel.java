@@ -0,0 +1,214 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.stocator.fs.swift.pushdown;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+
+/**
+ * Decides per block whether a pushdown query is evaluated by the storlet or
+ * by the client on a plain range read. The cost of both is observed per
+ * object prefix and query shape: the time spent waiting for the result,
+ * per byte of the object, and the share of the bytes kept by the query.
+ *
+ * The storlet is used until it was measured. The client evaluation is then
+ * tried only if the query keeps most of the bytes, where the storlet saves
+ * little transfer. Once both were measured the cheaper one is used, the
+ * other one is measured again from time to time.
+ *
+ * Shared by the streams of a client. This class is thread-safe
+ */
+public class PushdownCostModel {
+  /*
+   * Number of blocks measured before the costs are trusted
+   */
+  public static final int MIN_SAMPLES = 3;
+  /*
+   * One block in EXPLORE_PERIOD measures the more expensive evaluation
+   */
+  public static final int EXPLORE_PERIOD = 20;
+  /*
+   * Min share of the bytes kept by a query for the client evaluation to be tried
+   */
+  public static final double MIN_SELECTIVITY = 0.5;
+  /*
+   * Weight of a new measure in the averages
+   */
+  private static final double WEIGHT = 0.25;
+
+  /*
+   * Costs per object prefix and query shape
+   */
+  private final Map<String, Costs> costs = new HashMap<String, Costs>();
+
+  /**
+   * Key of the costs of a query on an object: the object prefix and the
+   * query without the values of its predicate
+   *
+   * @param objectName name of the object
+   * @param query pushdown query
+   * @return key of the costs
+   */
+  public static String getKey(String objectName, PushdownQuery query) {
+    String prefix = objectName.substring(0, objectName.lastIndexOf('/') + 1);
+    return prefix + "|" + query.toString().replaceAll(
+        ",\\s*('[^']*'|\"[^\"]*\"|[^,()]*)\\)", ",?)");
+  }
+
+  /**
+   * Decides how the next block is evaluated
+   *
+   * @param key key of the costs
+   * @return true to invoke the storlet, false to evaluate the query in the client
+   */
+  public synchronized boolean useStorlet(String key) {
+    Costs c = getCosts(key);
+    c.blocks++;
+    if (c.storletSamples < MIN_SAMPLES) {
+      return true;
+    }
+    if (c.rawSamples < MIN_SAMPLES) {
+      return c.selectivity < MIN_SELECTIVITY;
+    }
+    boolean storletCheaper = c.storletNanosPerByte <= c.rawNanosPerByte;
+    // measure the more expensive evaluation again, its cost may have changed
+    return c.blocks % EXPLORE_PERIOD == 0 ? !storletCheaper : storletCheaper;
+  }
+
+  /**
+   * Records a block evaluated by the storlet
+   *
+   * @param key key of the costs
+   * @param bytesIn bytes of the object sent to the storlet
+   * @param bytesOut bytes of the result
+   * @param nanos time spent waiting for the result
+   */
+  public synchronized void storletCompleted(String key, long bytesIn, long bytesOut,
+      long nanos) {
+    if (bytesIn <= 0) {
+      return;
+    }
+    Costs c = getCosts(key);
+    double selectivity = (double) bytesOut / bytesIn;
+    double nanosPerByte = (double) nanos / bytesIn;
+    if (c.storletSamples == 0) {
+      c.selectivity = selectivity;
+      c.storletNanosPerByte = nanosPerByte;
+    } else {
+      c.selectivity += WEIGHT * (selectivity - c.selectivity);
+      c.storletNanosPerByte += WEIGHT * (nanosPerByte - c.storletNanosPerByte);
+    }
+    c.storletSamples++;
+  }
+
+  /**
+   * Records a block evaluated by the client
+   *
+   * @param key key of the costs
+   * @param bytesIn bytes of the object read
+   * @param nanos time spent waiting for the result, reading and evaluating
+   */
+  public synchronized void rawCompleted(String key, long bytesIn, long nanos) {
+    if (bytesIn <= 0) {
+      return;
+    }
+    Costs c = getCosts(key);
+    double nanosPerByte = (double) nanos / bytesIn;
+    if (c.rawSamples == 0) {
+      c.rawNanosPerByte = nanosPerByte;
+    } else {
+      c.rawNanosPerByte += WEIGHT * (nanosPerByte - c.rawNanosPerByte);
+    }
+    c.rawSamples++;
+  }
+
+  /**
+   * Measures the evaluation of a block. The block is recorded once its
+   * result is read to its end
+   *
+   * @param key key of the costs
+   * @param storlet true if evaluated by the storlet
+   * @param bytesIn bytes of the object evaluated
+   * @param requestNanos time spent waiting for the response
+   * @param result stream of the result
+   * @return stream of the result, to read instead of the given one
+   */
+  public InputStream measure(final String key, final boolean storlet, final long bytesIn,
+      final long requestNanos, InputStream result) {
+    return new FilterInputStream(result) {
+      private long nanos = requestNanos;
+      private long bytesOut;
+      private boolean completed;
+
+      @Override
+      public int read() throws IOException {
+        long start = System.nanoTime();
+        int b = super.read();
+        completed(b < 0 ? -1 : 1, start);
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        int bytes = super.read(b, off, len);
+        completed(bytes, start);
+        return bytes;
+      }
+
+      private void completed(int bytes, long start) {
+        nanos += System.nanoTime() - start;
+        if (bytes >= 0) {
+          bytesOut += bytes;
+        } else if (!completed) {
+          completed = true;
+          if (storlet) {
+            storletCompleted(key, bytesIn, bytesOut, nanos);
+          } else {
+            rawCompleted(key, bytesIn, nanos);
+          }
+        }
+      }
+    };
+  }
+
+  private Costs getCosts(String key) {
+    Costs c = costs.get(key);
+    if (c == null) {
+      c = new Costs();
+      costs.put(key, c);
+    }
+    return c;
+  }
+
+  /**
+   * Observed costs of a query shape on an object prefix
+   */
+  private static final class Costs {
+    private long blocks;
+    private int storletSamples;
+    private int rawSamples;
+    private double selectivity;
+    private double storletNanosPerByte;
+    private double rawNanosPerByte;
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.stocator.fs.swift.pushdown;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.javaswift.joss.headers.GeneralHeader;
+import org.javaswift.joss.instructions.DownloadInstructions;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+
+/**
+ * Headers of the invocations of the CSV storlet for a query, compiled once
+ * per stream. The headers that don't depend on the range are built when
+ * compiled and shared by all the requests, each request only adds the
+ * headers of its range.
+ *
+ * This class is immutable
+ */
+public final class PushdownHeaderTemplate {
+  /*
+   * Headers shared by all the requests
+   */
+  private final List<GeneralHeader> headers;
+  /*
+   * Index of the next storlet parameter header
+   */
+  private final int nextParameter;
+
+  /**
+   * Compiles the headers of a query
+   *
+   * @param query query, not empty
+   * @param storletVersion version of the CSV storlet
+   * @param blockSize size of the blocks read from the objects
+   * @param dynamicDebug dynamic debug level of the storlet
+   */
+  public PushdownHeaderTemplate(PushdownQuery query, int storletVersion, long blockSize,
+      int dynamicDebug) {
+    List<GeneralHeader> template = new ArrayList<GeneralHeader>();
+    if (!query.getProjection().isEmpty()) {
+      StringBuilder fields = new StringBuilder();
+      for (String field : query.getProjection()) {
+        // the storlet parameter values can't contain its name separator
+        fields.append(fields.length() > 0 ? "_" : "").append(field);
+      }
+      template.add(parameter(template.size(), PushdownStorletConstants.PUSHDOWN_COLUMNS,
+          fields.toString()));
+    }
+    if (query.getPredicate() != null) {
+      template.add(parameter(template.size(), PushdownStorletConstants.PUSHDOWN_PREDICATE,
+          query.getPredicate()));
+    }
+    for (Map.Entry<String, String> param : query.getParameters().entrySet()) {
+      template.add(parameter(template.size(), param.getKey(), param.getValue()));
+    }
+    // the block size enables the storlet not to produce duplicates
+    template.add(parameter(template.size(),
+        PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_BLOCK_SIZE, Long.toString(blockSize)));
+    template.add(parameter(template.size(),
+        PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_DYNAMIC_DEBUG,
+        Integer.toString(dynamicDebug)));
+    nextParameter = template.size();
+    // this is the header that requests the CSV storlet invocation
+    template.add(new GeneralHeader(PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_HEADER_NAME,
+        PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_NAME_PREFIX + storletVersion
+        + PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_NAME_SUFIX));
+    headers = Collections.unmodifiableList(template);
+  }
+
+  /**
+   * Adds the headers of a request of the storlet
+   *
+   * @param instructions download instructions of the request
+   * @param requestedFrom offset of the first byte of the block
+   * @param requestedTo offset of the last byte sent to the storlet
+   * @param prefixLength number of bytes sent before the block, whose record
+   *        is discarded by the storlet. 0 for the first block
+   */
+  public void addHeaders(DownloadInstructions instructions, long requestedFrom,
+      long requestedTo, int prefixLength) {
+    for (GeneralHeader header : headers) {
+      instructions.addHeader(header);
+    }
+    int index = nextParameter;
+    if (prefixLength > 0) {
+      instructions.addHeader(parameter(index++,
+          PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_ADDED_PREFIX_LENGTH,
+          Integer.toString(prefixLength)));
+    }
+    instructions.addHeader(parameter(index,
+        PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_REQUESTED_RANGE, requestedFrom
+        + PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_REQUESTED_RANGE_SEPARATOR
+        + requestedTo));
+  }
+
+  /**
+   * @return headers shared by all the requests
+   */
+  public List<GeneralHeader> getHeaders() {
+    return headers;
+  }
+
+  private static GeneralHeader parameter(int index, String key, String value) {
+    return new GeneralHeader(
+        PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_PARAM_PREFIX + index,
+        key + PushdownStorletConstants.SWIFT_STORLET_QUERY_PARAM_EQUAL + value);
+  }
+}
@@ -0,0 +1,193 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.stocator.fs.swift.pushdown;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.ibm.stocator.fs.swift.cache.DiskBlockCache;
+
+/**
+ * Node local cache of the output of the pushdown storlet. Results are keyed
+ * by the caller, with the object version, the storlet, the normalized query
+ * and the requested range, so a modified object or another query never hits
+ * a previous result.
+ * A result is recorded while it is read and added to the cache only once
+ * read to its end. Results larger than a max size are not cached.
+ * The results are stored in a {@link DiskBlockCache}, which bounds their
+ * total size and evicts the least recently used ones.
+ *
+ * This class is thread-safe
+ */
+public class PushdownResultCache {
+  /*
+   * Logger
+   */
+  private static final Logger LOG = LoggerFactory.getLogger(PushdownResultCache.class);
+  /*
+   * Store of the cached results
+   */
+  private final DiskBlockCache cache;
+  /*
+   * Max size of a cached result
+   */
+  private final int maxResultSize;
+  /*
+   * Number of results served by the cache
+   */
+  private long hits;
+  /*
+   * Number of results requested to the storlet
+   */
+  private long misses;
+
+  /**
+   * Constructor
+   *
+   * @param resultCache store of the cached results
+   * @param maxSize max size of a cached result
+   */
+  public PushdownResultCache(DiskBlockCache resultCache, int maxSize) {
+    cache = resultCache;
+    maxResultSize = maxSize;
+  }
+
+  /**
+   * Get a cached result
+   *
+   * @param key key of the result
+   * @return stream of the cached result or null if not cached
+   */
+  public InputStream get(String key) {
+    final ByteBuffer result = cache.get(key);
+    synchronized (this) {
+      if (result == null) {
+        misses++;
+        return null;
+      }
+      hits++;
+    }
+    LOG.trace("Pushdown result cache hit {}", key);
+    return new InputStream() {
+      @Override
+      public int read() {
+        return result.hasRemaining() ? result.get() & 0xFF : -1;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+          return 0;
+        }
+        if (!result.hasRemaining()) {
+          return -1;
+        }
+        int bytes = Math.min(len, result.remaining());
+        result.get(b, off, bytes);
+        return bytes;
+      }
+
+      @Override
+      public int available() {
+        return result.remaining();
+      }
+    };
+  }
+
+  /**
+   * Records a result read from the storlet. The result is cached once
+   * the returned stream reaches its end
+   *
+   * @param key key of the result
+   * @param result stream of the storlet output
+   * @return stream of the result, to read instead of the storlet output
+   */
+  public InputStream record(final String key, InputStream result) {
+    return new FilterInputStream(result) {
+      private ByteArrayOutputStream recorded = new ByteArrayOutputStream();
+
+      @Override
+      public int read() throws IOException {
+        int b = super.read();
+        if (b < 0) {
+          completed();
+        } else if (accept(1)) {
+          recorded.write(b);
+        }
+        return b;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        int bytes = super.read(b, off, len);
+        if (bytes < 0) {
+          completed();
+        } else if (accept(bytes)) {
+          recorded.write(b, off, bytes);
+        }
+        return bytes;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        // skipped bytes would be missing from the result
+        recorded = null;
+        return super.skip(n);
+      }
+
+      @Override
+      public boolean markSupported() {
+        return false;
+      }
+
+      private boolean accept(int bytes) {
+        if (recorded != null && recorded.size() + bytes > maxResultSize) {
+          LOG.trace("Pushdown result {} larger than {}, not cached", key, maxResultSize);
+          recorded = null;
+        }
+        return recorded != null;
+      }
+
+      private void completed() {
+        if (recorded != null) {
+          cache.put(key, ByteBuffer.wrap(recorded.toByteArray()));
+          recorded = null;
+        }
+      }
+    };
+  }
+
+  /**
+   * @return number of results served by the cache
+   */
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  /**
+   * @return number of results requested to the storlet
+   */
+  public synchronized long getMisses() {
+    return misses;
+  }
+}
@@ -0,0 +1,203 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ * <p/>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p/>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p/>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ibm.stocator.fs.swift.pushdown;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Offsets of the records at the block boundaries of a CSV object: for each
+ * block, the offset of the first record that starts in it. The records of a
+ * block are then read with a range that starts and ends on records, without
+ * reading the end of the previous block nor the start of the next one.
+ *
+ * The index is stored in a sidecar object next to the CSV object, hidden
+ * from the listings of Hadoop. The sidecar records the version of the object,
+ * the block size and the record delimiter it was built for, an index built
+ * for another one is ignored.
+ *
+ * This class is immutable
+ */
+public final class RecordOffsetIndex {
+  /*
+   * Prefix of the name of a sidecar object, hides it from the Hadoop listings
+   */
+  public static final String SIDECAR_PREFIX = ".";
+  /*
+   * Suffix of the name of a sidecar object
+   */
+  public static final String SIDECAR_SUFFIX = ".offsets";
+
+  private final String version;
+  private final long blockSize;
+  private final String delimiter;
+  private final long length;
+  /*
+   * Offset of the first record of each block, followed by the object length
+   */
+  private final long[] offsets;
+
+  /**
+   * Constructor
+   *
+   * @param objectVersion version of the object
+   * @param theBlockSize size of the blocks
+   * @param recordDelimiter record delimiter
+   * @param objectLength length of the object
+   * @param recordOffsets offset of the first record of each block, followed
+   *        by the object length
+   * @throws IllegalArgumentException if the offsets don't match the blocks
+   */
+  public RecordOffsetIndex(String objectVersion, long theBlockSize, String recordDelimiter,
+      long objectLength, long[] recordOffsets) {
+    if (recordOffsets.length != getBlockCount(objectLength, theBlockSize) + 1
+        || recordOffsets[recordOffsets.length - 1] != objectLength) {
+      throw new IllegalArgumentException("Record offsets don't match the "
+          + getBlockCount(objectLength, theBlockSize) + " blocks of the object");
+    }
+    for (int i = 1; i < recordOffsets.length; i++) {
+      if (recordOffsets[i] < recordOffsets[i - 1]) {
+        throw new IllegalArgumentException("Decreasing record offset " + recordOffsets[i]);
+      }
+    }
+    version = objectVersion;
+    blockSize = theBlockSize;
+    delimiter = recordDelimiter;
+    length = objectLength;
+    offsets = recordOffsets.clone();
+  }
+
+  /**
+   * @param objectName name of a CSV object
+   * @return name of its sidecar object
+   */
+  public static String getSidecarName(String objectName) {
+    int leaf = objectName.lastIndexOf('/') + 1;
+    return objectName.substring(0, leaf) + SIDECAR_PREFIX + objectName.substring(leaf)
+        + SIDECAR_SUFFIX;
+  }
+
+  /**
+   * @param objectLength length of an object
+   * @param blockSize size of the blocks
+   * @return number of blocks of the object
+   */
+  public static int getBlockCount(long objectLength, long blockSize) {
+    return (int) ((objectLength + blockSize - 1) / blockSize);
+  }
+
+  /**
+   * Finds the first record that starts in a range
+   *
+   * @param buf bytes of the range, from the delimiter that may end the
+   *        record preceding it
+   * @param len number of bytes of the range
+   * @param recordDelimiter bytes that end a record
+   * @return offset in buf of the record, -1 if not in the range
+   */
+  public static int findRecordStart(byte[] buf, int len, byte[] recordDelimiter) {
+    for (int i = 0; i <= len - recordDelimiter.length; i++) {
+      int j = 0;
+      while (j < recordDelimiter.length && buf[i + j] == recordDelimiter[j]) {
+        j++;
+      }
+      if (j == recordDelimiter.length) {
+        return i + j;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parses the content of a sidecar object
+   *
+   * @param content content of the sidecar object
+   * @param objectVersion version of the object
+   * @param theBlockSize size of the blocks
+   * @param recordDelimiter record delimiter
+   * @param objectLength length of the object
+   * @return index or null if built for another object version, block size
+   *         or delimiter
+   * @throws IllegalArgumentException if the content is malformed
+   */
+  public static RecordOffsetIndex parse(byte[] content, String objectVersion,
+      long theBlockSize, String recordDelimiter, long objectLength) {
+    String[] lines = new String(content, StandardCharsets.UTF_8).split("\n");
+    if (!getHeader(objectVersion, theBlockSize, recordDelimiter, objectLength)
+        .equals(lines[0])) {
+      return null;
+    }
+    long[] recordOffsets = new long[lines.length - 1];
+    try {
+      for (int i = 1; i < lines.length; i++) {
+        recordOffsets[i - 1] = Long.parseLong(lines[i]);
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Malformed record offset: " + e.getMessage());
+    }
+    return new RecordOffsetIndex(objectVersion, theBlockSize, recordDelimiter, objectLength,
+        recordOffsets);
+  }
+
+  /**
+   * @return content of the sidecar object
+   */
+  public byte[] toBytes() {
+    StringBuilder str = new StringBuilder(getHeader(version, blockSize, delimiter, length));
+    for (long offset : offsets) {
+      str.append('\n').append(offset);
+    }
+    return str.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @param blockStart offset of the first byte of a block
+   * @return offset of the first record of the block, the next block's if
+   *         none starts in it. -1 if blockStart isn't the start of a block
+   */
+  public long getRecordStart(long blockStart) {
+    if (blockStart % blockSize != 0 || blockStart >= length) {
+      return -1;
+    }
+    return offsets[(int) (blockStart / blockSize)];
+  }
+
+  /**
+   * @param blockStart offset of the first byte of a block
+   * @return offset following the last record of the block, -1 if blockStart
+   *         isn't the start of a block
+   */
+  public long getRecordEnd(long blockStart) {
+    if (blockStart % blockSize != 0 || blockStart >= length) {
+      return -1;
+    }
+    return offsets[(int) (blockStart / blockSize) + 1];
+  }
+
+  /**
+   * First line of a sidecar object. The delimiter is in hexadecimal, it may
+   * be a line break
+   */
+  private static String getHeader(String objectVersion, long theBlockSize,
+      String recordDelimiter, long objectLength) {
+    StringBuilder str = new StringBuilder(objectVersion).append(' ').append(theBlockSize)
+        .append(' ');
+    for (byte b : recordDelimiter.getBytes(StandardCharsets.UTF_8)) {
+      str.append(String.format("%02x", b & 0xFF));
+    }
+    return str.append(' ').append(objectLength).toString();
+  }
+}
@@ -16,19 +16,26 @@
 
 package com.ibm.stocator.fs.swift.pushdown;
 
+import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.javaswift.joss.exception.CommandException;
+import org.javaswift.joss.exception.CommandExceptionError;
+import org.javaswift.joss.exception.NotFoundException;
 import org.javaswift.joss.model.Container;
-import org.javaswift.joss.headers.GeneralHeader;
+import org.javaswift.joss.model.StoredObject;
 import org.javaswift.joss.instructions.DownloadInstructions;
 import org.javaswift.joss.headers.object.range.AbstractRange;
 
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.ibm.stocator.fs.common.PushdownQuery;
 import com.ibm.stocator.fs.swift.SwiftAPIClient;
 import com.ibm.stocator.fs.swift.SwiftInputStream;
 
@@ -36,17 +43,60 @@ public class SwiftPushdownInputStream extends SwiftInputStream {
 
   private static final Logger LOG = LoggerFactory.getLogger(SwiftPushdownInputStream.class);
 
-  private final List<GeneralHeader> pushdownHeaders = new ArrayList<>();
   private final long blockSize;   // used by stocator when reading a swift object
-  private final int dynamicStorletDebug;
   private final String csvRecordDelimiter;
   private final int delimiterLength;
   private final long maxRecordSize;  // maximum length in bytes of a CSV record
   private final int storletVersion;
+  // pushdown query, null if the object is read as is
+  private final PushdownQuery query;
+  // headers of the storlet invocations, compiled from the query. Null if no pushdown
+  private final PushdownHeaderTemplate headerTemplate;
+  // query evaluated by the client if the storlet fails. Null if not supported
+  private final CsvRecordFilter fallbackFilter;
+  // key of the observed costs of the query on the object. Null if no client evaluation
+  private final String costKey;
+  // key of the storlet bypass of the query on the object. Null if no client evaluation
+  private final String bypassKey;
+  // record offsets at the block boundaries, null if not loaded or not available
+  private RecordOffsetIndex recordIndex;
+  private boolean recordIndexLoaded;
 
   public SwiftPushdownInputStream(SwiftAPIClient storeNative,
                                   String hostName, Path path)
     throws IOException {
+    this(storeNative, hostName, path, null);
+  }
+
+  /**
+   * Constructor. The object isn't validated if its status is known
+   *
+   * @param storeNative store client
+   * @param hostName URL to host
+   * @param path path to the object, with the pushdown query if any
+   * @param status known status of the object or null
+   * @throws IOException if the object doesn't exist or the query is malformed
+   */
+  public SwiftPushdownInputStream(SwiftAPIClient storeNative,
+                                  String hostName, Path path, FileStatus status)
+    throws IOException {
+    this(storeNative, hostName, path, status, null);
+  }
+
+  /**
+   * Constructor. The object isn't validated if its status is known
+   *
+   * @param storeNative store client
+   * @param hostName URL to host
+   * @param path path to the object. Its query string is parsed if no query is given
+   * @param status known status of the object or null
+   * @param pushdownQuery query pushed down to the storlet or null
+   * @throws IOException if the object doesn't exist or the query is malformed
+   */
+  public SwiftPushdownInputStream(SwiftAPIClient storeNative,
+                                  String hostName, Path path, FileStatus status,
+                                  PushdownQuery pushdownQuery)
+    throws IOException {
     super(storeNative);
     LOG.debug("init: {}", path.toString());
     String str = " SwiftPushdownInputStream.constructor storeNative " + storeNative
@@ -56,201 +106,411 @@ public class SwiftPushdownInputStream extends SwiftInputStream {
     Container theContainer = nativeStore.getAccount().getContainer(nativeStore.getDataRoot());
     blockSize = nativeStore.getBlockSize();
     storletVersion = nativeStore.getStorletVersion();
-    csvRecordDelimiter = nativeStore.getCsvRecordDelimiter();
+
+    String fullPath = path.toString();
+    int queryStartIndex = fullPath.indexOf(PushdownQuery.QUERY_START);
+    String noQueryPath = fullPath;
+    PushdownQuery theQuery = pushdownQuery;
+    if (queryStartIndex >= 0) {
+      if (theQuery != null) {
+        throw new IOException("Pushdown query given both in the path and as a query: " + path);
+      }
+      noQueryPath = fullPath.substring(0, queryStartIndex);
+      try {
+        theQuery = PushdownQuery.parse(fullPath.substring(queryStartIndex + 1));
+      } catch (IllegalArgumentException e) {
+        throw new IOException("Bad pushdown query in " + path + ": " + e.getMessage());
+      }
+    }
+    if (theQuery != null && theQuery.isEmpty()) {
+      theQuery = null;
+    }
+    query = theQuery;
+    csvRecordDelimiter = query != null && query.getRecordDelimiter() != null
+        ? query.getRecordDelimiter() : nativeStore.getCsvRecordDelimiter();
     delimiterLength = csvRecordDelimiter.length();
-    maxRecordSize = nativeStore.getMaxRecordSize();
-    dynamicStorletDebug = nativeStore.getDynamicStorletDebug();
-
-    // handlePushdownHeaders does the following:
-    // 1. put into pushdownHeaders all the necessary headers, except for the prefixLength
-    //    which can not be determined till seek is invoked
-    // 2. returns a path equals to input path but where the query string was truncated
-    String noQueryPath = handlePushdownHeaders(path, theContainer, pushdownHeaders);
+    maxRecordSize = query != null && query.getMaxRecordSize() > 0
+        ? query.getMaxRecordSize() : nativeStore.getMaxRecordSize();
+    if (query != null) {
+      LOG.debug("Pushdown query {}", query);
+      headerTemplate = new PushdownHeaderTemplate(query, storletVersion, blockSize,
+          nativeStore.getDynamicStorletDebug());
+      fallbackFilter = compileFallback(query);
+    } else {
+      LOG.debug("No pushdown since " + PushdownQuery.QUERY_START
+          + " not to be found in full path " + fullPath);
+      headerTemplate = null;
+      fallbackFilter = null;
+    }
     String objectName = noQueryPath.substring(hostName.length());
 
+    costKey = fallbackFilter != null ? PushdownCostModel.getKey(objectName, query) : null;
+    bypassKey = fallbackFilter != null ? objectName + "|" + query : null;
     storedObject = theContainer.getObject(objectName);
-    if (!storedObject.exists()) {
+    if (!setKnownStatus(status) && !storedObject.exists()) {
       throw new FileNotFoundException(objectName + " does not exists");
     } else {
       LOG.debug("SwiftPushdownInputStream.constructor blockSize = " + blockSize
                + " csvRecordDelimiter = " + csvRecordDelimiter
                + " delimiterLength = " + delimiterLength);
     }
+    prefetchTail();
   }
 
   @Override
   public synchronized void seek(long targetPos) throws IOException {
     // printStackTrace("#### seek " + targetPos);
     LOG.debug("#### seek " + targetPos);
-    super.seekPart1(targetPos);
-
-    DownloadInstructions instructions = new DownloadInstructions();
+    if (headerTemplate == null) {
+      // no pushdown: plain range read of the object
+      super.seek(targetPos);
+      return;
+    }
+    if (!super.seekPart1(targetPos)) {
+      return;
+    }
 
-    LOG.debug("pushdownHeaders.size is  " + pushdownHeaders.size());
-    if (pushdownHeaders.size() <= 0) {
-
-      instructions = super.seekPart2(targetPos);
-    } else {  // SQL pushdown case:
-      // Compute offset and length to fix the problem of the broken first/last records:
-      // computeStorletOffset will add the prefix header (if needed)
-      long modifiedFrom = computeStorletOffset(targetPos,
-                 delimiterLength,
-                 blockSize,
-                 pushdownHeaders);
-      long modifiedTo = targetPos + nativeStore.getBlockSize() + maxRecordSize;
-
-      String requestedRange = (new Long(targetPos))
-          + PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_REQUESTED_RANGE_SEPARATOR
-          + new Long(modifiedTo);
-      addStorletParameterHeader(pushdownHeaders,
-                 PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_REQUESTED_RANGE,
-                 requestedRange);
-
-      addStorletParameterHeader(pushdownHeaders,
-                 PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_DYNAMIC_DEBUG,
-                        new Integer(dynamicStorletDebug).toString());
-
-      // add all the pushdown headers:
-      for (GeneralHeader nextHeader : pushdownHeaders) {
-        instructions.addHeader(nextHeader);
+    // SQL pushdown case:
+    long modifiedFrom;
+    long modifiedTo;
+    long requestedFrom;
+    RecordOffsetIndex index = getRecordIndex();
+    long recordStart = index != null ? index.getRecordStart(targetPos) : -1;
+    if (recordStart >= 0) {
+      // the range starts and ends on records: nothing to discard, no overlap
+      modifiedFrom = recordStart;
+      modifiedTo = index.getRecordEnd(targetPos) - 1;
+      requestedFrom = recordStart;
+      if (modifiedFrom > modifiedTo) {
+        LOG.debug("No record starts in the block at {}", targetPos);
+        super.seekPart3(targetPos, new ByteArrayInputStream(new byte[0]));
+        return;
       }
+    } else {
+      // Compute offset and length to fix the problem of the broken first/last records
+      modifiedFrom = computeStorletOffset(targetPos, delimiterLength);
+      modifiedTo = targetPos + blockSize + maxRecordSize;
+      requestedFrom = targetPos;
+    }
 
-      LOG.debug("Range from byte = " + modifiedFrom + " and till byte  = " +  modifiedTo);
-      AbstractRange range = new AbstractRange(modifiedFrom, modifiedTo) {
-
-          @Override
-          public long getTo(int arg0) {
-            return offset;
-          }
-
-          @Override
-          public long getFrom(int arg0) {
-            return length;
-          }
+    PushdownResultCache resultCache = nativeStore.getPushdownCache();
+    String resultKey = null;
+    if (resultCache != null) {
+      resultKey = getResultKey(modifiedFrom, targetPos, modifiedTo);
+      InputStream cached = resultCache.get(resultKey);
+      if (cached != null) {
+        LOG.debug("Seek served by the pushdown result cache for: {}", storedObject.getName());
+        super.seekPart3(targetPos, cached);
+        return;
+      }
+    }
 
-          @Override
-          public String getHeaderName() {
-            // "X-Storlet-Range"
-            return PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_RANGE;
-          }
+    // the storlet is bypassed after a failure or if the client evaluation is cheaper.
+    // Only the storlet results are cached, they are served once the storlet recovers
+    PushdownCostModel costModel = fallbackFilter != null
+        ? nativeStore.getPushdownCostModel() : null;
+    if (fallbackFilter != null && (nativeStore.isStorletBypassed(bypassKey)
+        || costModel != null && !costModel.useStorlet(costKey))) {
+      LOG.debug("Pushdown query evaluated by the client for: {}", storedObject.getName());
+      long start = System.nanoTime();
+      InputStream raw = fallbackRead(targetPos, modifiedFrom, modifiedTo);
+      super.seekPart3(targetPos, measure(costModel, false, modifiedFrom, modifiedTo, start,
+          raw));
+      return;
+    }
 
-        };
-      instructions.setRange(range);
+    // add all the pushdown headers: the prefix header only if the read starts earlier
+    DownloadInstructions instructions = new DownloadInstructions();
+    headerTemplate.addHeaders(instructions, requestedFrom, modifiedTo,
+        (int) (requestedFrom - modifiedFrom));
+
+    LOG.debug("Range from byte = " + modifiedFrom + " and till byte  = " +  modifiedTo);
+    AbstractRange range = new AbstractRange(modifiedFrom, modifiedTo) {
+
+        @Override
+        public long getTo(int arg0) {
+          return offset;
+        }
+
+        @Override
+        public long getFrom(int arg0) {
+          return length;
+        }
+
+        @Override
+        public String getHeaderName() {
+          // "X-Storlet-Range"
+          return PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_RANGE;
+        }
+
+      };
+    instructions.setRange(range);
+
+    InputStream result;
+    try {
+      long start = System.nanoTime();
+      result = record(resultCache, resultKey, measure(costModel, true, modifiedFrom,
+          modifiedTo, start, download(instructions)));
+    } catch (CommandException e) {
+      if (fallbackFilter == null || nativeStore.getPushdownFallbackPeriod() <= 0
+          || !isStorletFailure(e)) {
+        throw e;
+      }
+      LOG.warn("Storlet invocation failed for {}, the query is evaluated by the client: {}",
+          storedObject.getName(), e.getMessage());
+      nativeStore.storletFailed(bypassKey);
+      result = fallbackRead(targetPos, modifiedFrom, modifiedTo);
     }
+    super.seekPart3(targetPos, result);
+  }
 
-    super.seekPart3(targetPos, instructions);
+  /**
+   * A storlet invocation fails with a server error, or with a bad request if
+   * the storlet rejects its parameters. A missing object, an authorization
+   * failure or an error of the client is not a storlet failure, the plain
+   * read of the object would fail the same way
+   *
+   * @param e error of a storlet invocation
+   * @return true if the storlet failed to evaluate the query
+   */
+  private static boolean isStorletFailure(CommandException e) {
+    int status = e.getHttpStatusCode();
+    return e.getError() == CommandExceptionError.UNKNOWN
+        && (status >= 500 || status == 400);
   }
 
-  private long computeStorletOffset(final long targetPos, final int delimiterLength,
-           final long blockSize, final List<GeneralHeader> pushdownHeaders) {
-
-    // First add to the headers the blocksize to enable the storlet not to produce duplicates
-    {
-      LOG.debug(" computeStorletOffset targetPos = " + targetPos + " delimiterLength = "
-               + delimiterLength + " blockSize = " + blockSize + " pushdownHeaders.size() = "
-               + pushdownHeaders.size());
-      addStorletParameterHeader(pushdownHeaders,
-                PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_BLOCK_SIZE,
-                Long.toString(blockSize));
+  /**
+   * Reads a block with a plain range GET and evaluates the query on it
+   *
+   * @param targetPos offset of the first byte of the block
+   * @param from offset of the first byte of the range
+   * @param to offset of the last byte of the range
+   * @return stream of the query result on the block
+   * @throws IOException if failed to read the range
+   */
+  private InputStream fallbackRead(long targetPos, long from, long to) throws IOException {
+    long length = storedObject.getContentLength();
+    if (from >= length) {
+      return new ByteArrayInputStream(new byte[0]);
     }
+    InputStream raw = download(getRangeInstructions(from, Math.min(to, length - 1)));
+    return new CsvFilterInputStream(raw, fallbackFilter,
+        csvRecordDelimiter.getBytes(StandardCharsets.UTF_8), from, targetPos, blockSize);
+  }
 
-    if (targetPos == 0) {  // Attempting to read first slice of the object
-      LOG.debug("computeStorletOffset handling first partition at offset = " + targetPos);
-      return targetPos;
-    } else {
-      // this is not the first slice, we have to start a bit earlier to make sure that
-      // all read bytes till first encountered end of record can be discarded
-      long retVal = targetPos - delimiterLength;
-      LOG.debug("computeStorletOffset handling NON first partition offset = " + retVal);
-
-      // Add now the ADDED_PREFIX_LENGTH: needed by the CSV pushdown storlet
-      // to know that all read bytes till first encountered end of record should be discarded
-      addStorletParameterHeader(pushdownHeaders,
-                PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_ADDED_PREFIX_LENGTH,
-                Integer.toString(delimiterLength));
-
-      return retVal;
+  /**
+   * Gets the record offset index of the object. A single stream of the
+   * client loads it on its first pushdown read: from the sidecar object, or
+   * built in background by reading the records at the block boundaries.
+   * The reads don't wait for a build, they use the index once it is built.
+   * A built index is written to the sidecar object only if enabled
+   *
+   * @return index or null if disabled or not available yet
+   */
+  private RecordOffsetIndex getRecordIndex() {
+    if (recordIndex != null || !nativeStore.isPushdownIndexEnabled()) {
+      return recordIndex;
+    }
+    final long length = storedObject.getContentLength();
+    // sidecars are shared by the streams opened with a HEAD or a known status
+    final String version = getStatusVersion();
+    final String key = nativeStore.getDataRoot() + "/" + storedObject.getName() + "/" + version
+        + "/" + blockSize + "/" + csvRecordDelimiter;
+    recordIndex = nativeStore.getRecordOffsetIndex(key);
+    if (recordIndex != null || recordIndexLoaded) {
+      return recordIndex;
     }
+    recordIndexLoaded = true;
+    if (!nativeStore.startRecordOffsetIndex(key)) {
+      return null;
+    }
+    final StoredObject sidecar = nativeStore.getAccount()
+        .getContainer(nativeStore.getDataRoot())
+        .getObject(RecordOffsetIndex.getSidecarName(storedObject.getName()));
+    try {
+      recordIndex = RecordOffsetIndex.parse(sidecar.downloadObject(), version, blockSize,
+          csvRecordDelimiter, length);
+    } catch (NotFoundException e) {
+      LOG.debug("No record offset index for {}", storedObject.getName());
+    } catch (CommandException | IllegalArgumentException e) {
+      LOG.warn("Ignoring the record offset index of {}: {}", storedObject.getName(),
+          e.getMessage());
+    }
+    if (recordIndex != null) {
+      nativeStore.putRecordOffsetIndex(key, recordIndex);
+      return recordIndex;
+    }
+    nativeStore.getReadExecutor().execute(new Runnable() {
+      @Override
+      public void run() {
+        buildRecordIndex(key, sidecar, version, length);
+      }
+    });
+    return null;
   }
 
   /**
-   * Adds within pushdownHeaders headers needed for pushdown storlet invocation
-   * @return  a path equals to input path but where the query string was truncated
+   * Builds the record offset index of the object for the streams of the
+   * client, and writes it to the sidecar object if enabled and still missing
+   *
+   * @param key key of the index in the client
+   * @param sidecar sidecar object
+   * @param version version of the object
+   * @param length length of the object
    */
-  private String handlePushdownHeaders(final Path path, final Container theContainer,
-                                       final List<GeneralHeader> pushdownHeaders) {
-    String fullPath = path.toString();
-
-    int queryStartIndex = fullPath.indexOf(PushdownStorletConstants.SWIFT_STORLET_QUERY_START);
-    if (queryStartIndex < 0) {
-      LOG.debug("No pushdown since " + PushdownStorletConstants.SWIFT_STORLET_QUERY_START
-          + " not to be found in full path " + fullPath);
-      return fullPath;
+  private void buildRecordIndex(String key, StoredObject sidecar, String version,
+      long length) {
+    RecordOffsetIndex index;
+    try {
+      index = buildRecordIndex(version, length);
+    } catch (IOException | CommandException e) {
+      LOG.warn("Failed to build the record offset index of {}: {}", storedObject.getName(),
+          e.getMessage());
+      return;
     }
-
-    String queryPath = fullPath.substring(queryStartIndex + 1);
-
-    String[] theParams =
-      queryPath.split(PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_QUERY_SEPARATOR);  // ;
-    int addedQueryParams = 0;
-
-    for (String nextParam : theParams) {
-      LOG.debug(" handlePushdownHeaders handling now " + nextParam);
-      String[] paramParts = nextParam.split(
-              PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_QUERY_PARAM_EQUAL);
-      if (paramParts.length != 2) {
-        LOG.warn("Skipping bad formed Storlet query parameter " + nextParam);
-      } else {
-        addStorletParameterHeader(pushdownHeaders,
-                                  paramParts[0],
-                                  paramTransform(paramParts[0], paramParts[1]));
-        addedQueryParams++;
+    if (index == null) {
+      return;
+    }
+    nativeStore.putRecordOffsetIndex(key, index);
+    if (!nativeStore.isPushdownIndexWriteEnabled()) {
+      return;
+    }
+    try {
+      if (!sidecar.exists()) {
+        sidecar.uploadObject(index.toBytes());
       }
+    } catch (CommandException e) {
+      LOG.warn("Failed to write the record offset index of {}: {}",
+          storedObject.getName(), e.getMessage());
     }
+  }
 
-    if (addedQueryParams > 0) {
-      // add all the headers needed for the storlet invocation:
+  /**
+   * Builds the record offset index of the object. The start of the first
+   * record of each block is found with a range read of at most a record
+   *
+   * @param version version of the object
+   * @param length length of the object
+   * @return index or null if a record is larger than the max record size
+   * @throws IOException if failed to read the object
+   */
+  private RecordOffsetIndex buildRecordIndex(String version, long length) throws IOException {
+    byte[] delimiter = csvRecordDelimiter.getBytes(StandardCharsets.UTF_8);
+    int blocks = RecordOffsetIndex.getBlockCount(length, blockSize);
+    long[] offsets = new long[blocks + 1];
+    byte[] buf = new byte[(int) maxRecordSize + delimiter.length];
+    for (int i = 1; i < blocks; i++) {
+      // from the delimiter that may end the last record of the previous block
+      long from = i * blockSize - delimiter.length;
+      long to = Math.min(from + buf.length, length) - 1;
+      int len = (int) (to - from + 1);
+      InputStream in = download(getRangeInstructions(from, to));
+      try {
+        int read = 0;
+        while (read < len) {
+          int bytes = in.read(buf, read, len - read);
+          if (bytes < 0) {
+            throw new IOException("Unexpected end of " + storedObject.getName() + " at "
+                + (from + read));
+          }
+          read += bytes;
+        }
+      } finally {
+        in.close();
+      }
+      int start = RecordOffsetIndex.findRecordStart(buf, len, delimiter);
+      if (start < 0 && to < length - 1) {
+        LOG.debug("Record larger than {} bytes at {} in {}, no record offset index",
+            maxRecordSize, from, storedObject.getName());
+        return null;
+      }
+      offsets[i] = Math.max(offsets[i - 1], start < 0 ? length : from + start);
+    }
+    offsets[blocks] = length;
+    LOG.debug("Record offset index of {} built for {} blocks", storedObject.getName(), blocks);
+    return new RecordOffsetIndex(version, blockSize, csvRecordDelimiter, length, offsets);
+  }
 
-      // 1. this is the header that request the CSV storlet invocation:
-      final String storletName = PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_NAME_PREFIX
-                 + storletVersion + PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_NAME_SUFIX;
+  /**
+   * Measures the evaluation of a block for the cost model
+   *
+   * @param costModel cost model or null if the evaluations aren't measured
+   * @param storlet true if evaluated by the storlet
+   * @param from offset of the first byte of the range
+   * @param to offset of the last byte of the range
+   * @param start time the request was sent, in nanoseconds
+   * @param result stream of the query result on the block
+   * @return stream of the result, to read instead of the given one
+   */
+  private InputStream measure(PushdownCostModel costModel, boolean storlet, long from,
+      long to, long start, InputStream result) {
+    if (costModel == null) {
+      return result;
+    }
+    long bytesIn = Math.min(to, storedObject.getContentLength() - 1) - from + 1;
+    return costModel.measure(costKey, storlet, bytesIn, System.nanoTime() - start, result);
+  }
 
-      pushdownHeaders.add(new GeneralHeader(
-          PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_HEADER_NAME, storletName)
-      );
+  private static InputStream record(PushdownResultCache resultCache, String resultKey,
+      InputStream result) {
+    return resultCache == null ? result : resultCache.record(resultKey, result);
+  }
 
-      LOG.debug("Number of added ##Headers to container is " + pushdownHeaders.size());
+  /**
+   * @return query evaluated by the client if the storlet fails, null if the
+   *         client doesn't support the query
+   */
+  private CsvRecordFilter compileFallback(PushdownQuery pushdownQuery) {
+    try {
+      return CsvRecordFilter.compile(pushdownQuery);
+    } catch (IllegalArgumentException e) {
+      LOG.debug("No client evaluation of the pushdown query: {}", e.getMessage());
+      return null;
     }
+  }
 
-    return fullPath.substring(0, queryStartIndex);
+  /**
+   * Key of a storlet result in the pushdown result cache: the object and its
+   * version, the storlet, the normalized query and the requested range
+   *
+   * @param from offset of the first byte sent to the storlet
+   * @param targetPos offset of the first byte of the block
+   * @param to offset of the last byte sent to the storlet
+   * @return key of the result
+   */
+  private String getResultKey(long from, long targetPos, long to) {
+    return nativeStore.getDataRoot() + "/" + storedObject.getName() + "/" + getObjectVersion()
+        + "/" + storletVersion + "/" + query + "/" + from + "-" + targetPos + "-" + to
+        + "/" + blockSize;
   }
 
-  private String paramTransform(String paramKey, String paramVal) {
-    if (PushdownStorletConstants.PUSHDOWN_COLUMNS.equals(paramKey)) {
-      return paramVal.replace(":", "_");
-    } else {
-      return paramVal;
-    }
+  @Override
+  protected boolean isRangeAddressable() {
+    return headerTemplate == null;
   }
 
-  private boolean isExpectedPushdownStorletParameter(String theKey) {
-    // for (String nextKey : PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_QUERY_STRINGS) {
-    //   if (nextKey.equals(theKey)) {
-    //     return true;
-    //   }
-    // }
-    // return false;
-    return true;
+  /**
+   * @return pushdown query of the stream, null if the object is read as is
+   */
+  public PushdownQuery getQuery() {
+    return query;
   }
 
-  private void addStorletParameterHeader(final List<GeneralHeader> pushdownHeaders,
-                         final String key, final String val) {
+  private long computeStorletOffset(final long targetPos, final int delimiterLength) {
+    LOG.debug(" computeStorletOffset targetPos = " + targetPos + " delimiterLength = "
+             + delimiterLength + " blockSize = " + blockSize);
 
-    String paramKey = PushdownStorletConstants.SWIFT_PUSHDOWN_STORLET_PARAM_PREFIX
-        + pushdownHeaders.size();
-    String paramValue = key + PushdownStorletConstants.SWIFT_STORLET_QUERY_PARAM_EQUAL + val;
-    LOG.debug(" ### addStorletParameterHeader  key = " + key + " val = " + val);
-    pushdownHeaders.add(new GeneralHeader(paramKey, paramValue));
+    if (targetPos == 0) {  // Attempting to read first slice of the object
+      LOG.debug("computeStorletOffset handling first partition at offset = " + targetPos);
+      return targetPos;
+    } else {
+      // this is not the first slice, we have to start a bit earlier to make sure that
+      // all read bytes till first encountered end of record can be discarded:
+      // the ADDED_PREFIX_LENGTH header tells the CSV pushdown storlet to do so
+      long retVal = targetPos - delimiterLength;
+      LOG.debug("computeStorletOffset handling NON first partition offset = " + retVal);
+      return retVal;
+    }
   }
 
 }
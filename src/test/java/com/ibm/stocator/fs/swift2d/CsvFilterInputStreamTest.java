@@ -0,0 +1,116 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+import com.ibm.stocator.fs.swift.pushdown.CsvFilterInputStream;
+import com.ibm.stocator.fs.swift.pushdown.CsvRecordFilter;
+
+public class CsvFilterInputStreamTest {
+
+  private static final byte[] DATA = "a,1\nb,2\n\"c,x\",3\nd,4".getBytes(StandardCharsets.UTF_8);
+  /*
+   * Query, records and result of the CSV storlet, on the cases where a
+   * client evaluation is most likely to differ: numbers compared to strings,
+   * quoted fields and values, missing and empty fields. The client
+   * evaluation must not be chosen over the storlet by default before these
+   * results are checked against recorded storlet runs
+   */
+  private static final String[][] STORLET_RESULTS = {
+    {"whereClause=GreaterThan(1,9)", "a,10\nb,9\nc,x\n", "a,10\nc,x\n"},
+    {"whereClause=GreaterThan(1,2)", "a, 3\nb,2.5\nc,-4\n", "a, 3\nb,2.5\n"},
+    {"whereClause=LessThan(0,b)", "a,1\nab,2\nb,3\nB,4\n", "a,1\nab,2\nB,4\n"},
+    {"whereClause=EqualTo(0,'b c')", "\"b c\",1\nb,2\n", "\"b c\",1\n"},
+    {"selectedFields=1", "\"c,x\",3\nd\n", "3\n\n"},
+    {"selectedFields=0", "\"a\"\"b\",1\n", "\"a\"\"b\"\n"},
+    {"whereClause=IsNull(1)", "a,\nb,2\nc\n", "a,\nc\n"},
+    {"whereClause=NotEqualTo(1,2)", "a,\nb,2\nc,3\n", "c,3\n"},
+  };
+
+  @Test
+  public void blocksTest() throws Exception {
+    CsvRecordFilter filter = CsvRecordFilter.compile(PushdownQuery.builder().build());
+    // every record is in exactly one block, whatever the block boundaries
+    for (int blockSize = 1; blockSize <= DATA.length; blockSize++) {
+      StringBuilder result = new StringBuilder();
+      for (int block = 0; block < DATA.length; block += blockSize) {
+        result.append(readBlock(filter, block, blockSize));
+      }
+      Assert.assertEquals("Block size " + blockSize, "a,1\nb,2\n\"c,x\",3\nd,4\n",
+          result.toString());
+    }
+  }
+
+  @Test
+  public void queryTest() throws Exception {
+    CsvRecordFilter filter = CsvRecordFilter.compile(PushdownQuery.parse(
+        "selectedFields=1:0;whereClause=Or(GreaterThan(_c1,2),EqualTo(0,'a'))"));
+    Assert.assertEquals("1,a\n3,\"c,x\"\n4,d\n", readBlock(filter, 0, DATA.length));
+    filter = CsvRecordFilter.compile(PushdownQuery.parse(
+        "selectedFields=0;whereClause=And(Not(StringContains(0,x)),LessThanOrEqual(1,3))"));
+    Assert.assertEquals("a\nb\n", readBlock(filter, 0, DATA.length));
+  }
+
+  @Test
+  public void storletResultsTest() throws Exception {
+    for (String[] result : STORLET_RESULTS) {
+      CsvRecordFilter filter = CsvRecordFilter.compile(PushdownQuery.parse(result[0]));
+      byte[] data = result[1].getBytes(StandardCharsets.UTF_8);
+      Assert.assertEquals(result[0] + " on " + result[1], result[2],
+          readBlock(filter, data, 0, data.length));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedTest() throws Exception {
+    CsvRecordFilter.compile(PushdownQuery.parse("whereClause=In(0,[a,b])"));
+  }
+
+  /**
+   * Reads a block as the pushdown input stream does: from the delimiter
+   * before the block, to the end of the data
+   */
+  private static String readBlock(CsvRecordFilter filter, int blockStart, int blockSize)
+      throws IOException {
+    return readBlock(filter, DATA, blockStart, blockSize);
+  }
+
+  private static String readBlock(CsvRecordFilter filter, byte[] data, int blockStart,
+      int blockSize) throws IOException {
+    int from = Math.max(blockStart - 1, 0);
+    InputStream in = new CsvFilterInputStream(new ByteArrayInputStream(Arrays.copyOfRange(data,
+        from, data.length)), filter, new byte[] {'\n'}, from, blockStart, blockSize);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[3];
+    int bytes;
+    while ((bytes = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, bytes);
+    }
+    return new String(out.toByteArray(), StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.stocator.fs.swift.cache.DiskBlockCache;
+
+public class DiskBlockCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void hitAndMissTest() throws Exception {
+    File dir = folder.newFolder("hit");
+    DiskBlockCache cache = DiskBlockCache.getInstance(dir.getPath(), 1024);
+    byte[] data = SwiftTestUtils.generateDataset(100, 0, 255);
+    Assert.assertNull(cache.get("container/object/etag/0"));
+    cache.put("container/object/etag/0", ByteBuffer.wrap(data));
+    ByteBuffer block = cache.get("container/object/etag/0");
+    Assert.assertNotNull(block);
+    byte[] res = new byte[block.remaining()];
+    block.get(res);
+    Assert.assertArrayEquals(data, res);
+    Assert.assertNull(cache.get("container/object/otheretag/0"));
+  }
+
+  @Test
+  public void lruEvictionTest() throws Exception {
+    File dir = folder.newFolder("lru");
+    DiskBlockCache cache = DiskBlockCache.getInstance(dir.getPath(), 250);
+    byte[] data = SwiftTestUtils.generateDataset(100, 0, 255);
+    cache.put("block1", ByteBuffer.wrap(data));
+    cache.put("block2", ByteBuffer.wrap(data));
+    // block1 becomes the most recently used
+    Assert.assertNotNull(cache.get("block1"));
+    cache.put("block3", ByteBuffer.wrap(data));
+    Assert.assertEquals(200, cache.getUsedSize());
+    Assert.assertNull(cache.get("block2"));
+    Assert.assertNotNull(cache.get("block1"));
+    Assert.assertNotNull(cache.get("block3"));
+    Assert.assertEquals(2, dir.listFiles().length);
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.cache.MemoryBlockCache;
+
+public class MemoryBlockCacheTest {
+
+  private static class CountingLoader implements MemoryBlockCache.BlockLoader {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release;
+
+    CountingLoader(CountDownLatch latch) {
+      release = latch;
+    }
+
+    @Override
+    public void load(ByteBuffer buffer) throws IOException {
+      loads.incrementAndGet();
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      }
+      while (buffer.hasRemaining()) {
+        buffer.put((byte) 7);
+      }
+    }
+  }
+
+  @Test
+  public void singleLoadTest() throws Exception {
+    final MemoryBlockCache cache = new MemoryBlockCache(1000);
+    CountDownLatch latch = new CountDownLatch(1);
+    final CountingLoader loader = new CountingLoader(latch);
+    final MemoryBlockCache.Block[] blocks = new MemoryBlockCache.Block[4];
+    Thread[] readers = new Thread[blocks.length];
+    for (int i = 0; i < readers.length; i++) {
+      final int reader = i;
+      readers[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            blocks[reader] = cache.get("block", 100, loader);
+          } catch (IOException e) {
+            Assert.fail(e.getMessage());
+          }
+        }
+      };
+      readers[i].start();
+    }
+    Thread.sleep(100);
+    latch.countDown();
+    for (Thread reader : readers) {
+      reader.join();
+    }
+    Assert.assertEquals(1, loader.loads.get());
+    for (MemoryBlockCache.Block block : blocks) {
+      ByteBuffer content = block.slice();
+      Assert.assertEquals(100, content.remaining());
+      Assert.assertEquals(7, content.get(99));
+      block.release();
+    }
+    Assert.assertEquals(100, cache.getAllocated());
+  }
+
+  @Test
+  public void evictionTest() throws Exception {
+    MemoryBlockCache cache = new MemoryBlockCache(250);
+    CountingLoader loader = new CountingLoader(new CountDownLatch(0));
+    cache.get("block1", 100, loader).release();
+    MemoryBlockCache.Block inUse = cache.get("block2", 100, loader);
+    // block1 becomes the most recently used
+    cache.get("block1", 100, loader).release();
+    cache.get("block3", 100, loader).release();
+    // block2 is evicted but still readable until released, block1 is evicted
+    // to keep the budget
+    Assert.assertEquals(200, cache.getAllocated());
+    Assert.assertEquals(7, inUse.slice().get(0));
+    inUse.release();
+    Assert.assertEquals(100, cache.getAllocated());
+    cache.get("block3", 100, loader).release();
+    Assert.assertEquals(3, loader.loads.get());
+    cache.get("block1", 100, loader).release();
+    Assert.assertEquals(4, loader.loads.get());
+    Assert.assertEquals(2, cache.getHits());
+  }
+}
@@ -0,0 +1,351 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.javaswift.joss.client.core.AbstractStoredObject;
+import org.javaswift.joss.command.impl.core.AbstractCommand;
+import org.javaswift.joss.command.impl.object.InputStreamWrapper;
+import org.javaswift.joss.headers.object.range.AbstractRange;
+import org.javaswift.joss.instructions.DownloadInstructions;
+import org.javaswift.joss.model.Account;
+import org.javaswift.joss.model.Container;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.apache.http.client.methods.HttpGet;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
+
+import com.ibm.stocator.fs.swift.SwiftAPIClient;
+import com.ibm.stocator.fs.swift.SwiftBufferPool;
+import com.ibm.stocator.fs.swift.SwiftHedgePolicy;
+import com.ibm.stocator.fs.swift.SwiftInputStream;
+import com.ibm.stocator.fs.swift.SwiftReadPolicy;
+import com.ibm.stocator.fs.swift.pushdown.PushdownStorletConstants;
+
+/**
+ * Object served by a mocked client, for the tests of the input streams.
+ * Every GET returns the JOSS response stream of the requested range, over a
+ * mocked HTTP request. As with JOSS, closing a response reads the rest of
+ * its body, aborting its request doesn't. The requested ranges and the
+ * bytes sent by the server are recorded. A storlet invocation returns its
+ * range as is, unless it is set to fail.
+ * The settings of the client are mocked, tests may stub them again
+ */
+public class MockSwiftObject {
+
+  public static final String HOST = "swift2d://container.service/";
+  public static final String NAME = "dir/object";
+
+  private final byte[] content;
+  private final SwiftAPIClient client;
+  private final AbstractStoredObject object;
+  private final ExecutorService executor;
+  /*
+   * Ranges of the GETs, as "from-to", "from-" if open-ended
+   */
+  private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+  /*
+   * Bytes sent by the server, read or drained by the client
+   */
+  private final AtomicLong bytesSent = new AtomicLong();
+  /*
+   * Number of aborted requests
+   */
+  private final AtomicInteger aborts = new AtomicInteger();
+  /*
+   * Number of responses that fail after failAfter bytes
+   */
+  private final AtomicInteger failures = new AtomicInteger();
+  private volatile long failAfter;
+  /*
+   * Number of responses whose body ends after truncateAfter bytes
+   */
+  private final AtomicInteger truncations = new AtomicInteger();
+  private volatile long truncateAfter;
+  /*
+   * Number of responses delayed by delayMillis
+   */
+  private final AtomicInteger delays = new AtomicInteger();
+  private volatile long delayMillis;
+  /*
+   * Error of the storlet invocations, null if they return their range as is
+   */
+  private volatile RuntimeException storletError;
+
+  public MockSwiftObject(byte[] data) {
+    content = data;
+    executor = Executors.newCachedThreadPool(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r);
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    object = Mockito.mock(AbstractStoredObject.class);
+    Mockito.when(object.getName()).thenReturn(NAME);
+    Mockito.when(object.exists()).thenReturn(true);
+    Mockito.when(object.getContentLength()).thenReturn((long) data.length);
+    Mockito.when(object.getEtag()).thenReturn("etag");
+    Mockito.when(object.getLastModifiedAsDate()).thenReturn(new Date(0));
+    Mockito.when(object.downloadObjectAsInputStream(Matchers.any(DownloadInstructions.class)))
+        .thenAnswer(new Answer<InputStream>() {
+          @Override
+          public InputStream answer(InvocationOnMock invocation) throws Throwable {
+            return download((DownloadInstructions) invocation.getArguments()[0]);
+          }
+        });
+    Container container = Mockito.mock(Container.class);
+    Mockito.when(container.getObject(NAME)).thenReturn(object);
+    Account account = Mockito.mock(Account.class);
+    Mockito.when(account.getContainer("container")).thenReturn(container);
+
+    client = Mockito.mock(SwiftAPIClient.class);
+    Mockito.when(client.getAccount()).thenReturn(account);
+    Mockito.when(client.getDataRoot()).thenReturn("container");
+    Mockito.when(client.getBlockSize()).thenReturn(1024L);
+    Mockito.when(client.getReadPolicy()).thenReturn(SwiftReadPolicy.Mode.ADAPTIVE);
+    Mockito.when(client.getRandomRangeSize()).thenReturn(256);
+    Mockito.when(client.getReadStallWindow()).thenReturn(10000L);
+    Mockito.when(client.getBufferPool()).thenReturn(new SwiftBufferPool(1024 * 1024));
+    Mockito.when(client.getReadBufferSize()).thenReturn(64);
+    Mockito.when(client.getHedgePolicy()).thenReturn(new SwiftHedgePolicy(0, 0));
+    Mockito.when(client.getReadExecutor()).thenReturn(executor);
+    Mockito.when(client.getReadRetries()).thenReturn(3);
+    Mockito.when(client.getReadRetryBackoff()).thenReturn(1L);
+    Mockito.when(client.getParallelReads()).thenReturn(1);
+    Mockito.when(client.getParallelChunkSize()).thenReturn(256);
+    Mockito.when(client.getVectoredReadMaxGap()).thenReturn(16);
+    Mockito.when(client.getVectoredReadMaxSize()).thenReturn(1024);
+    Mockito.when(client.getCacheBlockSize()).thenReturn(256);
+  }
+
+  /**
+   * @return mocked client, to stub its settings
+   */
+  public SwiftAPIClient getClient() {
+    return client;
+  }
+
+  /**
+   * @return mocked object
+   */
+  public AbstractStoredObject getObject() {
+    return object;
+  }
+
+  /**
+   * Opens the object, validated with a HEAD
+   */
+  public SwiftInputStream open() throws IOException {
+    return new SwiftInputStream(client, HOST, new Path(HOST + NAME));
+  }
+
+  /**
+   * Opens the object with its known status
+   */
+  public SwiftInputStream open(FileStatus status) throws IOException {
+    return new SwiftInputStream(client, HOST, new Path(HOST + NAME), status);
+  }
+
+  /**
+   * @return ranges of the GETs so far, in the order they were sent
+   */
+  public List<String> getRanges() {
+    synchronized (ranges) {
+      return new ArrayList<String>(ranges);
+    }
+  }
+
+  /**
+   * @return bytes sent by the server so far
+   */
+  public long getBytesSent() {
+    return bytesSent.get();
+  }
+
+  /**
+   * @return number of aborted requests so far
+   */
+  public int getAborts() {
+    return aborts.get();
+  }
+
+  /**
+   * The next responses fail after some bytes, as a dropped connection
+   *
+   * @param count number of responses that fail
+   * @param bytes number of bytes sent before the failure
+   */
+  public void failResponses(int count, long bytes) {
+    failAfter = bytes;
+    failures.set(count);
+  }
+
+  /**
+   * The body of the next responses ends early, as a server closing the
+   * connection without error
+   *
+   * @param count number of truncated responses
+   * @param bytes number of bytes sent before the end of the body
+   */
+  public void truncateResponses(int count, long bytes) {
+    truncateAfter = bytes;
+    truncations.set(count);
+  }
+
+  /**
+   * The next responses are sent after a delay, as a slow server
+   *
+   * @param count number of delayed responses
+   * @param millis delay in milliseconds
+   */
+  public void delayResponses(int count, long millis) {
+    delayMillis = millis;
+    delays.set(count);
+  }
+
+  /**
+   * The next storlet invocations fail, plain range reads are served
+   *
+   * @param error error of the storlet invocations, null if they succeed
+   */
+  public void failStorlet(RuntimeException error) {
+    storletError = error;
+  }
+
+  private InputStream download(DownloadInstructions instructions) throws IOException {
+    long from = 0;
+    long to = content.length - 1;
+    AbstractRange range = instructions.getRange();
+    if (range != null) {
+      String value = range.getHeaderValue().substring("bytes=".length());
+      ranges.add(value);
+      String[] bounds = value.split("-", -1);
+      from = Long.parseLong(bounds[0]);
+      if (!bounds[1].isEmpty()) {
+        to = Math.min(to, Long.parseLong(bounds[1]));
+      }
+    } else {
+      ranges.add("");
+    }
+    if (storletError != null && range != null && PushdownStorletConstants
+        .SWIFT_PUSHDOWN_STORLET_RANGE.equals(range.getHeaderName())) {
+      throw storletError;
+    }
+    if (delays.getAndDecrement() > 0) {
+      try {
+        Thread.sleep(delayMillis);
+      } catch (InterruptedException e) {
+        throw new InterruptedIOException("Interrupted response");
+      }
+    }
+    long failAt = failures.getAndDecrement() > 0 ? from + failAfter : Long.MAX_VALUE;
+    if (truncations.getAndDecrement() > 0) {
+      to = Math.min(to, from + truncateAfter - 1);
+    }
+    final Body body = new Body((int) from, (int) to + 1, failAt);
+    HttpGet request = Mockito.mock(HttpGet.class);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        body.aborted = true;
+        aborts.incrementAndGet();
+        return null;
+      }
+    }).when(request).abort();
+    AbstractCommand<?, ?> command = Mockito.mock(AbstractCommand.class);
+    Whitebox.setInternalState(command, "request", request);
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws IOException {
+        // as EntityUtils.consume
+        while (!body.aborted && body.read() >= 0) {
+          continue;
+        }
+        return null;
+      }
+    }).when(command).close();
+    return new InputStreamWrapper(command, body);
+  }
+
+  /**
+   * Body of a response
+   */
+  private final class Body extends InputStream {
+    private final int end;
+    private final long failAt;
+    private int position;
+    private volatile boolean aborted;
+
+    private Body(int from, int to, long failOffset) {
+      position = from;
+      end = to;
+      failAt = failOffset;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (aborted) {
+        throw new IOException("Request aborted");
+      }
+      if (position >= failAt) {
+        throw new IOException("Connection reset");
+      }
+      if (position >= end) {
+        return -1;
+      }
+      bytesSent.incrementAndGet();
+      return content[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      int c = read();
+      if (c < 0) {
+        return -1;
+      }
+      b[off] = (byte) c;
+      int n = 1;
+      while (n < len && position < end && position < failAt) {
+        b[off + n++] = (byte) read();
+      }
+      return n;
+    }
+  }
+}
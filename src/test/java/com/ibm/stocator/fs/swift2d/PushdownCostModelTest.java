@@ -0,0 +1,104 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+import com.ibm.stocator.fs.swift.pushdown.PushdownCostModel;
+
+public class PushdownCostModelTest {
+
+  private static final String KEY = "dir/|q";
+
+  @Test
+  public void keyTest() {
+    PushdownQuery q1 = PushdownQuery.builder().select("1", "2")
+        .where("And(EqualTo(1,'a'),GreaterThan(2,5))").build();
+    PushdownQuery q2 = PushdownQuery.builder().select("1", "2")
+        .where("And(EqualTo(1,'b'),GreaterThan(2,7))").build();
+    PushdownQuery q3 = PushdownQuery.builder().select("1", "2")
+        .where("And(EqualTo(1,'b'),LessThan(2,7))").build();
+    Assert.assertEquals(PushdownCostModel.getKey("dir/a.csv", q1),
+        PushdownCostModel.getKey("dir/b.csv", q2));
+    Assert.assertNotEquals(PushdownCostModel.getKey("dir/a.csv", q1),
+        PushdownCostModel.getKey("other/a.csv", q1));
+    Assert.assertNotEquals(PushdownCostModel.getKey("dir/a.csv", q2),
+        PushdownCostModel.getKey("dir/a.csv", q3));
+  }
+
+  @Test
+  public void selectiveQueryTest() {
+    PushdownCostModel model = new PushdownCostModel();
+    for (int i = 0; i < 100; i++) {
+      Assert.assertTrue(model.useStorlet(KEY));
+      // the storlet keeps 1% of the bytes
+      model.storletCompleted(KEY, 1000, 10, 1000);
+    }
+  }
+
+  @Test
+  public void cheaperEvaluationTest() {
+    PushdownCostModel model = new PushdownCostModel();
+    for (int i = 0; i < PushdownCostModel.MIN_SAMPLES; i++) {
+      Assert.assertTrue(model.useStorlet(KEY));
+      model.storletCompleted(KEY, 1000, 900, 4000);
+    }
+    // most of the bytes are kept: the client evaluation is measured
+    for (int i = 0; i < PushdownCostModel.MIN_SAMPLES; i++) {
+      Assert.assertFalse(model.useStorlet(KEY));
+      model.rawCompleted(KEY, 1000, 1000);
+    }
+    int storlet = 0;
+    for (int i = 0; i < PushdownCostModel.EXPLORE_PERIOD * 2; i++) {
+      storlet += model.useStorlet(KEY) ? 1 : 0;
+    }
+    // the storlet is measured again from time to time
+    Assert.assertEquals(2, storlet);
+    // the storlet got cheaper
+    for (int i = 0; i < 10; i++) {
+      model.storletCompleted(KEY, 1000, 900, 100);
+    }
+    Assert.assertTrue(model.useStorlet(KEY));
+  }
+
+  @Test
+  public void measureTest() throws Exception {
+    PushdownCostModel model = new PushdownCostModel();
+    for (int i = 0; i < PushdownCostModel.MIN_SAMPLES; i++) {
+      Assert.assertTrue(model.useStorlet(KEY));
+      InputStream in = model.measure(KEY, true, 10, 0,
+          new ByteArrayInputStream(new byte[8]));
+      byte[] buf = new byte[4];
+      while (in.read(buf, 0, buf.length) >= 0) {
+        continue;
+      }
+      // recorded once
+      Assert.assertEquals(-1, in.read());
+    }
+    // 80% of the bytes are kept
+    Assert.assertFalse(model.useStorlet(KEY));
+    // a result not read to its end isn't recorded
+    model.measure(KEY, false, 10, 0, new ByteArrayInputStream(new byte[8])).read();
+    Assert.assertFalse(model.useStorlet(KEY));
+  }
+}
@@ -0,0 +1,85 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.javaswift.joss.headers.GeneralHeader;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+import com.ibm.stocator.fs.swift.pushdown.PushdownHeaderTemplate;
+
+public class PushdownQueryTest {
+
+  @Test
+  public void parseTest() throws Exception {
+    PushdownQuery query = PushdownQuery.parse("whereClause=col2 > 5;selectedFields=0:2");
+    Assert.assertEquals(Arrays.asList("0", "2"), query.getProjection());
+    Assert.assertEquals("col2 > 5", query.getPredicate());
+    Assert.assertTrue(query.getParameters().isEmpty());
+    // the normalized form doesn't depend on the parameters order
+    Assert.assertEquals(query, PushdownQuery.builder().select("0", "2").where("col2 > 5")
+        .build());
+    Assert.assertEquals(query.toString(),
+        PushdownQuery.parse("selectedFields=0:2;whereClause=col2 > 5").toString());
+    Assert.assertTrue(PushdownQuery.parse("").isEmpty());
+  }
+
+  @Test
+  public void roundTripTest() throws Exception {
+    PushdownQuery query = PushdownQuery.builder().select("0", "2").where("col2 > 5")
+        .recordDelimiter("\r\n").maxRecordSize(2048).parameter("format", "csv").build();
+    PushdownQuery parsed = PushdownQuery.parse(query.toString());
+    Assert.assertEquals(query, parsed);
+    Assert.assertEquals("\r\n", parsed.getRecordDelimiter());
+    Assert.assertEquals(2048, parsed.getMaxRecordSize());
+    Assert.assertEquals("csv", parsed.getParameters().get("format"));
+    Assert.assertEquals(1, parsed.getParameters().size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void storeSeparatorTest() throws Exception {
+    PushdownQuery.builder().parameter("a" + PushdownQuery.STORE_PARAM_EQUAL + "b", "c").build();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void malformedTest() throws Exception {
+    PushdownQuery.parse("selectedFields=0:2;whereClause");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void emptyFieldTest() throws Exception {
+    PushdownQuery.builder().select("0", "").build();
+  }
+
+  @Test
+  public void templateTest() throws Exception {
+    PushdownQuery query = PushdownQuery.builder().select("0", "2").where("col2 > 5").build();
+    List<GeneralHeader> headers = new PushdownHeaderTemplate(query, 3, 1024, 0).getHeaders();
+    Assert.assertEquals(5, headers.size());
+    Assert.assertEquals("X-Storlet-Parameter-0", headers.get(0).getHeaderName());
+    Assert.assertEquals("selectedFields:0_2", headers.get(0).getHeaderValue());
+    Assert.assertEquals("whereClause:col2 > 5", headers.get(1).getHeaderValue());
+    Assert.assertEquals("X-Storlet-BlockSize:1024", headers.get(2).getHeaderValue());
+    Assert.assertEquals("CSVStorlet-3.0.jar", headers.get(4).getHeaderValue());
+  }
+}
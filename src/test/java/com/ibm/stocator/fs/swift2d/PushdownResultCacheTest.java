@@ -0,0 +1,80 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.ibm.stocator.fs.swift.cache.DiskBlockCache;
+import com.ibm.stocator.fs.swift.pushdown.PushdownResultCache;
+
+public class PushdownResultCacheTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void completedResultTest() throws Exception {
+    File dir = folder.newFolder("completed");
+    PushdownResultCache cache = new PushdownResultCache(
+        DiskBlockCache.getInstance(dir.getPath(), 1024), 200);
+    byte[] data = SwiftTestUtils.generateDataset(100, 0, 255);
+    Assert.assertNull(cache.get("object/etag/query/0-100"));
+    InputStream in = cache.record("object/etag/query/0-100", new ByteArrayInputStream(data));
+    Assert.assertArrayEquals(data, readAll(in));
+    Assert.assertArrayEquals(data, readAll(cache.get("object/etag/query/0-100")));
+    Assert.assertNull(cache.get("object/etag/otherquery/0-100"));
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(2, cache.getMisses());
+  }
+
+  @Test
+  public void partialResultTest() throws Exception {
+    File dir = folder.newFolder("partial");
+    PushdownResultCache cache = new PushdownResultCache(
+        DiskBlockCache.getInstance(dir.getPath(), 1024), 50);
+    byte[] data = SwiftTestUtils.generateDataset(100, 0, 255);
+    // not read to its end
+    InputStream in = cache.record("partial", new ByteArrayInputStream(data));
+    Assert.assertEquals(10, in.read(new byte[10]));
+    in.close();
+    Assert.assertNull(cache.get("partial"));
+    // larger than the max result size
+    in = cache.record("large", new ByteArrayInputStream(data));
+    Assert.assertArrayEquals(data, readAll(in));
+    Assert.assertNull(cache.get("large"));
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[16];
+    int bytes;
+    while ((bytes = in.read(buffer)) >= 0) {
+      out.write(buffer, 0, bytes);
+    }
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+import com.ibm.stocator.fs.swift.pushdown.CsvFilterInputStream;
+import com.ibm.stocator.fs.swift.pushdown.CsvRecordFilter;
+import com.ibm.stocator.fs.swift.pushdown.RecordOffsetIndex;
+
+public class RecordOffsetIndexTest {
+
+  private static final byte[] DATA = "a,1\nb,2\n\"c,x\",3\nd,4".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] DELIMITER = new byte[] {'\n'};
+
+  @Test
+  public void sidecarNameTest() {
+    Assert.assertEquals("dir/sub/.data.csv.offsets",
+        RecordOffsetIndex.getSidecarName("dir/sub/data.csv"));
+    Assert.assertEquals(".data.csv.offsets", RecordOffsetIndex.getSidecarName("data.csv"));
+  }
+
+  @Test
+  public void sidecarContentTest() {
+    RecordOffsetIndex index = build(4);
+    byte[] content = index.toBytes();
+    RecordOffsetIndex parsed = RecordOffsetIndex.parse(content, "v1", 4, "\n", DATA.length);
+    Assert.assertArrayEquals(content, parsed.toBytes());
+    Assert.assertEquals(4, parsed.getRecordStart(4));
+    Assert.assertEquals(8, parsed.getRecordEnd(4));
+    Assert.assertEquals(-1, parsed.getRecordStart(5));
+    Assert.assertEquals(-1, parsed.getRecordStart(DATA.length + 1));
+    // built for another version, block size or delimiter
+    Assert.assertNull(RecordOffsetIndex.parse(content, "v2", 4, "\n", DATA.length));
+    Assert.assertNull(RecordOffsetIndex.parse(content, "v1", 8, "\n", DATA.length));
+    Assert.assertNull(RecordOffsetIndex.parse(content, "v1", 4, "\r\n", DATA.length));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void malformedTest() {
+    RecordOffsetIndex.parse("v1 4 0a 19\n0\nx".getBytes(StandardCharsets.UTF_8), "v1", 4, "\n",
+        19);
+  }
+
+  @Test
+  public void alignedBlocksTest() throws Exception {
+    CsvRecordFilter filter = CsvRecordFilter.compile(PushdownQuery.builder().build());
+    // every record is in exactly one block, read without overlap
+    for (int blockSize = 1; blockSize <= DATA.length; blockSize++) {
+      RecordOffsetIndex index = build(blockSize);
+      StringBuilder result = new StringBuilder();
+      long bytesRead = 0;
+      for (int block = 0; block < DATA.length; block += blockSize) {
+        int from = (int) index.getRecordStart(block);
+        int to = (int) index.getRecordEnd(block);
+        bytesRead += to - from;
+        InputStream in = new CsvFilterInputStream(new ByteArrayInputStream(
+            Arrays.copyOfRange(DATA, from, to)), filter, DELIMITER, from, block, blockSize);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+          out.write(b);
+        }
+        result.append(new String(out.toByteArray(), StandardCharsets.UTF_8));
+      }
+      Assert.assertEquals("Block size " + blockSize, "a,1\nb,2\n\"c,x\",3\nd,4\n",
+          result.toString());
+      Assert.assertEquals(DATA.length, bytesRead);
+    }
+  }
+
+  /**
+   * Builds an index as the pushdown input stream does: each boundary is
+   * found from the byte before the block
+   */
+  private static RecordOffsetIndex build(int blockSize) {
+    int blocks = RecordOffsetIndex.getBlockCount(DATA.length, blockSize);
+    long[] offsets = new long[blocks + 1];
+    for (int i = 1; i < blocks; i++) {
+      int from = i * blockSize - 1;
+      byte[] probe = Arrays.copyOfRange(DATA, from, DATA.length);
+      int start = RecordOffsetIndex.findRecordStart(probe, probe.length, DELIMITER);
+      offsets[i] = Math.max(offsets[i - 1], start < 0 ? DATA.length : from + start);
+    }
+    offsets[blocks] = DATA.length;
+    return new RecordOffsetIndex("v1", blockSize, "\n", DATA.length, offsets);
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.SwiftBufferPool;
+
+public class SwiftBufferPoolTest {
+
+  @Test
+  public void reuseTest() throws Exception {
+    SwiftBufferPool pool = new SwiftBufferPool(1 << 20);
+    byte[] buffer = pool.acquire(100000);
+    Assert.assertEquals(131072, buffer.length);
+    pool.release(buffer);
+    Assert.assertEquals(131072, pool.getIdleSize());
+    Assert.assertSame(buffer, pool.acquire(70000));
+    Assert.assertEquals(0, pool.getIdleSize());
+    Assert.assertEquals(SwiftBufferPool.MIN_BUFFER_SIZE, pool.acquire(0).length);
+  }
+
+  @Test
+  public void boundTest() throws Exception {
+    SwiftBufferPool pool = new SwiftBufferPool(8192);
+    pool.release(pool.acquire(4096));
+    pool.release(pool.acquire(4096));
+    pool.release(pool.acquire(8192));
+    Assert.assertEquals(4096, pool.getIdleSize());
+    // buffers not allocated by the pool are not kept
+    pool.release(new byte[1000]);
+    Assert.assertEquals(4096, pool.getIdleSize());
+  }
+
+  @Test
+  public void metricsTest() throws Exception {
+    SwiftBufferPool pool = new SwiftBufferPool(1 << 20);
+    pool.release(pool.acquire(65536));
+    pool.release(pool.acquire(65536));
+    pool.acquire(4096);
+    Assert.assertEquals(1, pool.getHits());
+    Assert.assertEquals(2, pool.getMisses());
+  }
+}
@@ -0,0 +1,66 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.SwiftCombinedRange;
+import com.ibm.stocator.fs.swift.SwiftFileRange;
+
+public class SwiftCombinedRangeTest {
+
+  @Test
+  public void gapTest() throws Exception {
+    SwiftFileRange r1 = new SwiftFileRange(0, 100);
+    SwiftFileRange r2 = new SwiftFileRange(150, 100);
+    SwiftFileRange r3 = new SwiftFileRange(1000, 10);
+    // unordered input
+    List<SwiftCombinedRange> combined = SwiftCombinedRange.coalesce(Arrays.asList(r3, r2, r1),
+        50, 1000);
+    Assert.assertEquals(2, combined.size());
+    Assert.assertEquals(0, combined.get(0).getStart());
+    Assert.assertEquals(250, combined.get(0).getEnd());
+    Assert.assertEquals(Arrays.asList(r1, r2), combined.get(0).getChildren());
+    Assert.assertEquals(1000, combined.get(1).getStart());
+    Assert.assertEquals(1010, combined.get(1).getEnd());
+  }
+
+  @Test
+  public void maxSizeTest() throws Exception {
+    List<SwiftCombinedRange> combined = SwiftCombinedRange.coalesce(Arrays.asList(
+        new SwiftFileRange(0, 100), new SwiftFileRange(100, 100), new SwiftFileRange(200, 100)),
+        10, 250);
+    Assert.assertEquals(2, combined.size());
+    Assert.assertEquals(200, combined.get(0).getEnd());
+    Assert.assertEquals(200, combined.get(1).getStart());
+  }
+
+  @Test
+  public void overlapTest() throws Exception {
+    List<SwiftCombinedRange> combined = SwiftCombinedRange.coalesce(Arrays.asList(
+        new SwiftFileRange(0, 100), new SwiftFileRange(50, 20), new SwiftFileRange(90, 200)),
+        0, 100);
+    Assert.assertEquals(1, combined.size());
+    Assert.assertEquals(290, combined.get(0).getEnd());
+    Assert.assertEquals(3, combined.get(0).getChildren().size());
+  }
+}
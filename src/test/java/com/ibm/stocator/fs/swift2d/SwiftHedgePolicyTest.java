@@ -0,0 +1,70 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.SwiftHedgePolicy;
+
+public class SwiftHedgePolicyTest {
+
+  @Test
+  public void percentileTest() throws Exception {
+    SwiftHedgePolicy policy = new SwiftHedgePolicy(90, 100);
+    for (int i = 1; i < SwiftHedgePolicy.MIN_SAMPLES; i++) {
+      policy.requestCompleted(i);
+    }
+    Assert.assertEquals(-1, policy.requestStarted());
+    for (int i = SwiftHedgePolicy.MIN_SAMPLES; i <= SwiftHedgePolicy.WINDOW; i++) {
+      policy.requestCompleted(i);
+    }
+    Assert.assertEquals(90, policy.requestStarted());
+    // the oldest latencies are replaced
+    for (int i = 0; i < SwiftHedgePolicy.WINDOW; i++) {
+      policy.requestCompleted(1000);
+    }
+    Assert.assertEquals(1000, policy.requestStarted());
+  }
+
+  @Test
+  public void maxLoadTest() throws Exception {
+    SwiftHedgePolicy policy = new SwiftHedgePolicy(50, 10);
+    for (int i = 0; i < SwiftHedgePolicy.MIN_SAMPLES; i++) {
+      policy.requestCompleted(10);
+    }
+    for (int i = 0; i < 9; i++) {
+      Assert.assertEquals(-1, policy.requestStarted());
+    }
+    Assert.assertEquals(10, policy.requestStarted());
+    Assert.assertTrue(policy.acquireHedge());
+    Assert.assertFalse(policy.acquireHedge());
+    Assert.assertEquals(-1, policy.requestStarted());
+    Assert.assertEquals(1, policy.getHedges());
+  }
+
+  @Test
+  public void disabledTest() throws Exception {
+    SwiftHedgePolicy policy = new SwiftHedgePolicy(0, 5);
+    for (int i = 0; i < SwiftHedgePolicy.WINDOW; i++) {
+      policy.requestCompleted(10);
+    }
+    Assert.assertFalse(policy.isEnabled());
+    Assert.assertEquals(-1, policy.requestStarted());
+  }
+}
@@ -0,0 +1,610 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.javaswift.joss.exception.CommandExceptionError;
+import org.javaswift.joss.exception.NotFoundException;
+import org.javaswift.joss.instructions.DownloadInstructions;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.reflect.Whitebox;
+
+import com.ibm.stocator.fs.swift.SwiftConnectionPool;
+import com.ibm.stocator.fs.swift.SwiftFileRange;
+import com.ibm.stocator.fs.swift.SwiftHedgePolicy;
+import com.ibm.stocator.fs.swift.SwiftInputStream;
+import com.ibm.stocator.fs.swift.SwiftReadPolicy;
+import com.ibm.stocator.fs.swift.cache.DiskBlockCache;
+
+public class SwiftInputStreamTest {
+
+  private static final byte[] DATA = data(5000);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void prefetchTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getReadPolicy()).thenReturn(SwiftReadPolicy.Mode.RANDOM);
+    Mockito.when(store.getClient().getPrefetchDepth()).thenReturn(2);
+    Mockito.when(store.getClient().getPrefetchBufferSize()).thenReturn(100);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    // the first range is read by the stream, the next blocks are read ahead
+    List<String> ranges = store.getRanges();
+    Collections.sort(ranges, RANGE_ORDER);
+    Assert.assertEquals(list("0-255", "256-1280", "1281-2305", "2306-3330", "3331-4355",
+        "4356-5380"), ranges);
+    Assert.assertEquals(DATA.length, store.getBytesSent());
+  }
+
+  @Test
+  public void prefetchFailureTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getReadPolicy()).thenReturn(SwiftReadPolicy.Mode.RANDOM);
+    Mockito.when(store.getClient().getPrefetchDepth()).thenReturn(1);
+    Mockito.when(store.getClient().getPrefetchBufferSize()).thenReturn(600);
+    // the first range is shorter than the failure offset, the prefetched
+    // range fails while its head is buffered
+    store.failResponses(2, 400);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    // the failed prefetched response is aborted, not leaked
+    Assert.assertEquals(1, store.getAborts());
+  }
+
+  @Test
+  public void parallelReadTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getParallelReads()).thenReturn(3);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    // every block is read in chunks, the last chunks end with the object
+    List<String> ranges = store.getRanges();
+    Collections.sort(ranges, RANGE_ORDER);
+    Assert.assertEquals(list("0-255", "256-511", "512-767", "768-1023", "1024-1024",
+        "1025-1280", "1281-1536", "1537-1792", "1793-2048", "2049-2049"),
+        ranges.subList(0, 10));
+    Assert.assertEquals("4868-4999", ranges.get(ranges.size() - 1));
+    Assert.assertEquals(DATA.length, store.getBytesSent());
+  }
+
+  @Test
+  public void parallelReadTruncatedTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getParallelReads()).thenReturn(3);
+    // every response ends early
+    store.truncateResponses(Integer.MAX_VALUE, 200);
+    SwiftInputStream in = store.open();
+    byte[] buffer = new byte[DATA.length];
+    int total = 0;
+    try {
+      int bytes;
+      while ((bytes = in.read(buffer, total, buffer.length - total)) > 0) {
+        total += bytes;
+      }
+      Assert.fail("Truncated chunks read");
+    } catch (IOException e) {
+      Assert.assertTrue(e.getCause() instanceof EOFException);
+    }
+    in.close();
+    // the bytes returned before the failure are the ones of the object
+    Assert.assertTrue(total < DATA.length);
+    Assert.assertArrayEquals(Arrays.copyOf(DATA, total), Arrays.copyOf(buffer, total));
+  }
+
+  @Test
+  public void farSeekTest() throws Exception {
+    byte[] data = data(300000);
+    MockSwiftObject store = new MockSwiftObject(data);
+    Mockito.when(store.getClient().getBlockSize()).thenReturn(200000L);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(Arrays.copyOf(data, 10), read(in, 10));
+    in.seek(250000);
+    Assert.assertArrayEquals(Arrays.copyOfRange(data, 250000, data.length), readAll(in));
+    in.close();
+    // the first range is aborted, the gap is not sent
+    Assert.assertEquals(list("0-199999", "250000-250255"), store.getRanges().subList(0, 2));
+    Assert.assertEquals(1, store.getAborts());
+    Assert.assertTrue(store.getBytesSent() < 100000);
+  }
+
+  @Test
+  public void sequentialReadTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getReadPolicy()).thenReturn(
+        SwiftReadPolicy.Mode.SEQUENTIAL);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    // sequential reads request ranges of a block
+    Assert.assertEquals(list("0-1023", "1024-2047", "2048-3071", "3072-4095", "4096-4999"),
+        store.getRanges());
+    Assert.assertEquals(0, store.getAborts());
+
+    // closing a stream doesn't read the rest of its range
+    byte[] data = data(300000);
+    store = new MockSwiftObject(data);
+    Mockito.when(store.getClient().getBlockSize()).thenReturn(200000L);
+    in = store.open();
+    Assert.assertArrayEquals(Arrays.copyOf(data, 10), read(in, 10));
+    in.close();
+    Assert.assertEquals(list("0-199999"), store.getRanges());
+    Assert.assertEquals(1, store.getAborts());
+    Assert.assertTrue(store.getBytesSent() < 10000);
+  }
+
+  @Test
+  public void positionalReadTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(Arrays.copyOf(DATA, 10), read(in, 10));
+    byte[] buffer = new byte[100];
+    in.readFully(3000, buffer, 0, 100);
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 3000, 3100), buffer);
+    Assert.assertEquals(10, in.read(4990, buffer, 0, 100));
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 4990, 5000), Arrays.copyOf(buffer, 10));
+    Assert.assertEquals(-1, in.read(5000, buffer, 0, 100));
+    // the sequential read is not moved
+    Assert.assertEquals(10, in.getPos());
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 10, 20), read(in, 10));
+    in.close();
+    Assert.assertEquals(list("0-1023", "3000-3099", "4990-4999"), store.getRanges());
+  }
+
+  @Test
+  public void vectoredReadTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    SwiftInputStream in = store.open();
+    List<SwiftFileRange> ranges = new ArrayList<SwiftFileRange>();
+    ranges.add(new SwiftFileRange(3000, 100));
+    ranges.add(new SwiftFileRange(100, 50));
+    ranges.add(new SwiftFileRange(160, 40));
+    ranges.add(new SwiftFileRange(4980, 40));
+    in.readVectored(ranges);
+    Assert.assertEquals(ByteBuffer.wrap(DATA, 3000, 100), ranges.get(0).getData().get());
+    Assert.assertEquals(ByteBuffer.wrap(DATA, 100, 50), ranges.get(1).getData().get());
+    Assert.assertEquals(ByteBuffer.wrap(DATA, 160, 40), ranges.get(2).getData().get());
+    try {
+      ranges.get(3).getData().get();
+      Assert.fail("Range beyond the end of the object read");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof EOFException);
+    }
+    in.close();
+    // the nearby ranges are merged, the last one ends with the object
+    List<String> requested = store.getRanges();
+    Collections.sort(requested, RANGE_ORDER);
+    Assert.assertEquals(list("100-199", "3000-3099", "4980-4999"), requested);
+  }
+
+  @Test
+  public void byteBufferReadTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    FSDataInputStream in = new FSDataInputStream(store.open());
+    Assert.assertArrayEquals(DATA, readAll(in, ByteBuffer.allocate(300)));
+    in.seek(0);
+    Assert.assertArrayEquals(DATA, readAll(in, ByteBuffer.allocateDirect(300)));
+    in.close();
+    Assert.assertEquals(list("0-1023", "1024-2047", "2048-3071"),
+        store.getRanges().subList(0, 3));
+  }
+
+  @Test
+  public void diskCacheTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getDiskCache()).thenReturn(
+        DiskBlockCache.getInstance(folder.newFolder("cache").getPath(), 1024 * 1024));
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    Assert.assertEquals(DATA.length, store.getBytesSent());
+    // the second read is served by the mapped blocks
+    in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.seek(1000);
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 1000, 1100), read(in, 100));
+    in.close();
+    Assert.assertEquals(DATA.length, store.getBytesSent());
+  }
+
+  @Test
+  public void cancelledTailTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getTailPrefetchSize(MockSwiftObject.NAME)).thenReturn(1000);
+    // the tail prefetch is queued behind a blocked task
+    final CountDownLatch blocked = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        blocked.await();
+        return null;
+      }
+    });
+    Mockito.when(store.getClient().getReadExecutor()).thenReturn(executor);
+    final SwiftInputStream in = store.open();
+    final byte[] buffer = new byte[100];
+    FutureTask<Void> read = new FutureTask<Void>(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        in.readFully(4500, buffer, 0, 100);
+        return null;
+      }
+    });
+    Thread reader = new Thread(read);
+    reader.start();
+    // the positional read waits for the tail, which is cancelled by close
+    while (reader.getState() != Thread.State.WAITING && !read.isDone()) {
+      Thread.sleep(10);
+    }
+    in.close();
+    read.get();
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 4500, 4600), buffer);
+    Assert.assertEquals(list("4500-4599"), store.getRanges());
+    blocked.countDown();
+    executor.shutdown();
+  }
+
+  @Test
+  public void knownStatusTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    FileStatus status = new FileStatus(DATA.length, false, 1, 1024, 0,
+        new Path(MockSwiftObject.HOST + MockSwiftObject.NAME));
+    SwiftInputStream in = store.open(status);
+    // without ETag, the caches are keyed by length and modification time
+    Assert.assertEquals(DATA.length + "-0", Whitebox.invokeMethod(in, "getObjectVersion"));
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    // no HEAD, the object is only read
+    Mockito.verify(store.getObject(), Mockito.never()).exists();
+    Assert.assertEquals("0-1023", store.getRanges().get(0));
+
+    // a missing object is reported by the first GET
+    Mockito.doThrow(new NotFoundException(404, CommandExceptionError.ENTITY_DOES_NOT_EXIST))
+        .when(store.getObject()).downloadObjectAsInputStream(
+            Matchers.any(DownloadInstructions.class));
+    in = store.open(status);
+    try {
+      in.read();
+      Assert.fail("Missing object read");
+    } catch (FileNotFoundException e) {
+      // expected
+    }
+    in.close();
+    Mockito.verify(store.getObject(), Mockito.never()).exists();
+
+    // the caches of a validated object are keyed by its ETag
+    in = store.open();
+    Assert.assertEquals("etag", Whitebox.invokeMethod(in, "getObjectVersion"));
+    in.close();
+  }
+
+  @Test
+  public void unbufferTest() throws Exception {
+    byte[] data = data(300000);
+    MockSwiftObject store = new MockSwiftObject(data);
+    Mockito.when(store.getClient().getBlockSize()).thenReturn(200000L);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(Arrays.copyOf(data, 10), read(in, 10));
+    in.unbuffer();
+    // the range is aborted, not read to its end
+    Assert.assertEquals(1, store.getAborts());
+    Assert.assertTrue(store.getBytesSent() < 10000);
+    // the next read continues at the position with a new range
+    Assert.assertEquals(10, in.getPos());
+    Assert.assertArrayEquals(Arrays.copyOfRange(data, 10, 20), read(in, 10));
+    in.close();
+    Assert.assertEquals(list("0-199999", "10-200009"), store.getRanges());
+  }
+
+  @Test
+  public void resumeTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    // the connection drops after 300 bytes
+    store.failResponses(1, 300);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    // the read resumes from the position, the bytes read are not sent again
+    Assert.assertEquals(list("0-1023", "300-1323"), store.getRanges().subList(0, 2));
+    Assert.assertEquals(DATA.length, store.getBytesSent());
+
+    // the read fails once the retries without progress are exhausted
+    store = new MockSwiftObject(DATA);
+    store.failResponses(Integer.MAX_VALUE, 0);
+    in = store.open();
+    try {
+      readAll(in);
+      Assert.fail("Read not failed");
+    } catch (IOException e) {
+      Assert.assertEquals("Connection reset", e.getMessage());
+    }
+    in.close();
+    Assert.assertEquals(list("0-1023", "0-1023", "0-1023", "0-1023"), store.getRanges());
+  }
+
+  @Test
+  public void resumeModifiedTest() throws Exception {
+    final MockSwiftObject store = new MockSwiftObject(DATA);
+    store.failResponses(1, 300);
+    // the object is replaced before the read resumes
+    Mockito.doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        Mockito.when(store.getObject().getContentLength()).thenReturn(6000L);
+        return null;
+      }
+    }).when(store.getObject()).reload();
+    SwiftInputStream in = store.open(new FileStatus(DATA.length, false, 1, 1024, 0,
+        new Path(MockSwiftObject.HOST + MockSwiftObject.NAME)));
+    try {
+      readAll(in);
+      Assert.fail("Modified object read");
+    } catch (IOException e) {
+      Assert.assertEquals(MockSwiftObject.NAME + " was modified while being read",
+          e.getMessage());
+    }
+    in.close();
+    Assert.assertEquals(list("0-1023"), store.getRanges());
+  }
+
+  @Test
+  public void hedgedReadTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getReadPolicy()).thenReturn(SwiftReadPolicy.Mode.RANDOM);
+    SwiftHedgePolicy policy = new SwiftHedgePolicy(50, 100);
+    for (int i = 0; i < SwiftHedgePolicy.MIN_SAMPLES; i++) {
+      policy.requestCompleted(1000000);
+    }
+    Mockito.when(store.getClient().getHedgePolicy()).thenReturn(policy);
+    SwiftConnectionPool pool = Mockito.mock(SwiftConnectionPool.class);
+    Mockito.when(pool.getHedgeExecutor()).thenReturn(Executors.newCachedThreadPool());
+    Mockito.when(store.getClient().getConnectionPool()).thenReturn(pool);
+    // the first GET is slow, the hedged one is served
+    store.delayResponses(1, 500);
+    SwiftInputStream in = store.open();
+    Assert.assertArrayEquals(Arrays.copyOf(DATA, 100), read(in, 100));
+    in.close();
+    Assert.assertEquals(list("0-255", "0-255"), store.getRanges());
+    Assert.assertEquals(1, policy.getHedges());
+    // every request has its own instructions
+    ArgumentCaptor<DownloadInstructions> instructions =
+        ArgumentCaptor.forClass(DownloadInstructions.class);
+    Mockito.verify(store.getObject(), Mockito.times(2)).downloadObjectAsInputStream(
+        instructions.capture());
+    Assert.assertNotSame(instructions.getAllValues().get(0),
+        instructions.getAllValues().get(1));
+    // the slow response is closed once it arrives
+    waitForBytesSent(store, 512);
+
+    // a reader interrupted while waiting closes both responses once they arrive
+    store.delayResponses(2, 500);
+    in = store.open();
+    final Thread reader = Thread.currentThread();
+    Executors.newSingleThreadScheduledExecutor().schedule(new Runnable() {
+      @Override
+      public void run() {
+        reader.interrupt();
+      }
+    }, 100, TimeUnit.MILLISECONDS);
+    try {
+      in.seek(1000);
+      Assert.fail("Interrupted seek completed");
+    } catch (InterruptedIOException e) {
+      Assert.assertTrue(Thread.interrupted());
+    }
+    in.close();
+    Assert.assertEquals(list("0-255", "0-255", "1000-1255", "1000-1255"), store.getRanges());
+    waitForBytesSent(store, 1024);
+  }
+
+  @Test
+  public void stalledReadTest() throws Exception {
+    byte[] data = data(300000);
+    MockSwiftObject store = new MockSwiftObject(data);
+    Mockito.when(store.getClient().getBlockSize()).thenReturn(200000L);
+    // every read is below the floor
+    Mockito.when(store.getClient().getReadMinThroughput()).thenReturn(1000000000000L);
+    Mockito.when(store.getClient().getReadStallWindow()).thenReturn(0L);
+    SwiftInputStream in = store.open();
+    for (int i = 0; i < 10; i++) {
+      Assert.assertArrayEquals(Arrays.copyOfRange(data, i * 10, i * 10 + 10), read(in, 10));
+    }
+    in.close();
+    // the stalled responses are aborted until the retries are exhausted
+    Assert.assertEquals(list("0-199999", "10-200009", "20-200019", "30-200029"),
+        store.getRanges());
+    Assert.assertEquals(4, store.getAborts());
+    Assert.assertTrue(store.getBytesSent() < 20000);
+
+    // buffered content is not a stalled response
+    store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getReadMinThroughput()).thenReturn(1000000000000L);
+    Mockito.when(store.getClient().getReadStallWindow()).thenReturn(0L);
+    Mockito.when(store.getClient().getSmallObjectSize()).thenReturn(10000);
+    in = store.open();
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.close();
+    Assert.assertEquals(list(""), store.getRanges());
+    Assert.assertEquals(0, store.getAborts());
+  }
+
+  @Test
+  public void smallObjectTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getSmallObjectSize()).thenReturn(DATA.length);
+    SwiftInputStream in = store.open();
+    byte[] buffer = new byte[100];
+    in.readFully(3000, buffer, 0, 100);
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 3000, 3100), buffer);
+    Assert.assertArrayEquals(DATA, readAll(in));
+    in.seek(10);
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 10, 20), read(in, 10));
+    // positional reads don't wait for the stream monitor
+    final SwiftInputStream locked = in;
+    final CountDownLatch held = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Thread holder = new Thread() {
+      @Override
+      public void run() {
+        synchronized (locked) {
+          held.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      }
+    };
+    holder.start();
+    held.await();
+    try {
+      in.readFully(20, buffer, 0, 100);
+      Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 20, 120), buffer);
+    } finally {
+      release.countDown();
+      holder.join();
+    }
+    in.close();
+    // the whole object is read once
+    Assert.assertEquals(list(""), store.getRanges());
+    Assert.assertEquals(DATA.length, store.getBytesSent());
+  }
+
+  @Test
+  public void rangePipelineTest() throws Exception {
+    MockSwiftObject store = new MockSwiftObject(DATA);
+    Mockito.when(store.getClient().getReadPolicy()).thenReturn(SwiftReadPolicy.Mode.RANDOM);
+    Mockito.when(store.getClient().getRangePipelineDistance()).thenReturn(100);
+    SwiftInputStream in = store.open();
+    // random reads close to the end of their range don't request the next one
+    in.seek(1000);
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 1000, 1200), read(in, 200));
+    in.seek(3000);
+    Assert.assertArrayEquals(Arrays.copyOfRange(DATA, 3000, 3200), read(in, 200));
+    Assert.assertEquals(list("1000-1255", "3000-3255"), store.getRanges());
+    // once a range is read to its end, the next ones are pipelined
+    in.seek(0);
+    Assert.assertArrayEquals(Arrays.copyOf(DATA, 1024), read(in, 1024));
+    for (int i = 0; i < 100 && store.getRanges().size() < 7; i++) {
+      Thread.sleep(50);
+    }
+    Assert.assertEquals(list("1000-1255", "3000-3255", "0-255", "256-511", "512-767",
+        "768-1023", "1024-1279"), store.getRanges());
+    in.close();
+  }
+
+  static byte[] data(int length) {
+    byte[] data = new byte[length];
+    new Random(length).nextBytes(data);
+    return data;
+  }
+
+  static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buffer = new byte[100];
+    int bytes;
+    while ((bytes = in.read(buffer, 0, buffer.length)) >= 0) {
+      out.write(buffer, 0, bytes);
+    }
+    return out.toByteArray();
+  }
+
+  static byte[] readAll(FSDataInputStream in, ByteBuffer buffer) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    while (in.read(buffer) >= 0) {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        out.write(buffer.get());
+      }
+      buffer.clear();
+    }
+    return out.toByteArray();
+  }
+
+  static byte[] read(InputStream in, int length) throws IOException {
+    byte[] buffer = new byte[length];
+    int total = 0;
+    int bytes;
+    while (total < length && (bytes = in.read(buffer, total, length - total)) >= 0) {
+      total += bytes;
+    }
+    return Arrays.copyOf(buffer, total);
+  }
+
+  static void waitForBytesSent(MockSwiftObject store, long bytes) throws InterruptedException {
+    for (int i = 0; i < 100 && store.getBytesSent() < bytes; i++) {
+      Thread.sleep(50);
+    }
+    Assert.assertEquals(bytes, store.getBytesSent());
+  }
+
+  static List<String> list(String... values) {
+    List<String> result = new ArrayList<String>();
+    Collections.addAll(result, values);
+    return result;
+  }
+
+  /*
+   * Orders the ranges by their first byte
+   */
+  private static final java.util.Comparator<String> RANGE_ORDER =
+      new java.util.Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+          return Long.compare(Long.parseLong(a.split("-")[0]), Long.parseLong(b.split("-")[0]));
+        }
+      };
+}
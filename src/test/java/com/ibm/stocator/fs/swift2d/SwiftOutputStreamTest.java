@@ -0,0 +1,144 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.ibm.stocator.fs.swift.SwiftOutputStream;
+
+public class SwiftOutputStreamTest {
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void writeTest() throws Exception {
+    SwiftOutputStream out = new SwiftOutputStream(client(201), put(), executor);
+    byte[] data = SwiftInputStreamTest.data(1000);
+    out.write(data, 0, 500);
+    out.write(data[500]);
+    out.write(SwiftInputStreamTest.data(0));
+    out.flush();
+    out.write(data, 501, 499);
+    out.close();
+    Assert.assertArrayEquals(data, received.toByteArray());
+  }
+
+  @Test
+  public void largeWriteTest() throws Exception {
+    SwiftOutputStream out = new SwiftOutputStream(client(201), put(), executor);
+    // larger than the pipe to the request
+    byte[] data = SwiftInputStreamTest.data(10 * 1024 * 1024);
+    for (int off = 0; off < data.length; off += 100000) {
+      out.write(data, off, Math.min(100000, data.length - off));
+    }
+    out.close();
+    Assert.assertArrayEquals(data, received.toByteArray());
+  }
+
+  @Test
+  public void closeTest() throws Exception {
+    SwiftOutputStream out = new SwiftOutputStream(client(201), put(), executor);
+    out.write(1);
+    out.close();
+    // a second close is ignored, writes fail
+    out.close();
+    try {
+      out.flush();
+      Assert.fail("Flushed after close");
+    } catch (IOException e) {
+      Assert.assertEquals("Stream closed", e.getMessage());
+    }
+    try {
+      out.write(2);
+      Assert.fail("Written after close");
+    } catch (IOException e) {
+      Assert.assertEquals("Stream closed", e.getMessage());
+    }
+    Assert.assertArrayEquals(new byte[] {1}, received.toByteArray());
+  }
+
+  @Test
+  public void failureTest() throws Exception {
+    SwiftOutputStream out = new SwiftOutputStream(client(401), put(), executor);
+    out.write(1);
+    try {
+      out.close();
+      Assert.fail("Failed PUT closed");
+    } catch (IOException e) {
+      Assert.assertEquals("PUT failed with status 401", e.getMessage());
+    }
+
+    // the request fails before its body is sent
+    HttpClient client = Mockito.mock(HttpClient.class);
+    Mockito.when(client.execute(Matchers.any(HttpUriRequest.class))).thenThrow(
+        new IOException("Connection refused"));
+    out = new SwiftOutputStream(client, put(), executor);
+    out.write(1);
+    try {
+      out.close();
+      Assert.fail("Closed without connection");
+    } catch (IOException e) {
+      Assert.assertEquals("Connection refused", e.getMessage());
+    }
+  }
+
+  private static HttpPut put() {
+    return new HttpPut("http://swift.service/v1/account/container/object");
+  }
+
+  /**
+   * Client that writes the body of the PUT to received, then responds
+   * with the given status
+   */
+  private HttpClient client(final int status) throws IOException {
+    HttpClient client = Mockito.mock(HttpClient.class);
+    Mockito.when(client.execute(Matchers.any(HttpUriRequest.class))).thenAnswer(
+        new Answer<HttpResponse>() {
+          @Override
+          public HttpResponse answer(InvocationOnMock invocation) throws IOException {
+            HttpPut request = (HttpPut) invocation.getArguments()[0];
+            request.getEntity().writeTo(received);
+            return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, null);
+          }
+        });
+    return client;
+  }
+}
@@ -0,0 +1,255 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.javaswift.joss.exception.CommandException;
+import org.javaswift.joss.exception.CommandExceptionError;
+import org.javaswift.joss.exception.NotFoundException;
+import org.javaswift.joss.exception.UnauthorizedException;
+import org.javaswift.joss.model.StoredObject;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.Path;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.AdditionalAnswers;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
+import org.powermock.reflect.Whitebox;
+
+import com.ibm.stocator.fs.common.PushdownQuery;
+import com.ibm.stocator.fs.swift.SwiftAPIClient;
+import com.ibm.stocator.fs.swift.pushdown.PushdownResultCache;
+import com.ibm.stocator.fs.swift.pushdown.RecordOffsetIndex;
+import com.ibm.stocator.fs.swift.pushdown.SwiftPushdownInputStream;
+
+public class SwiftPushdownInputStreamTest {
+
+  private static final byte[] DATA = "a,1\nb,2\nc,3\nd,4\n".getBytes(StandardCharsets.UTF_8);
+  private static final PushdownQuery QUERY = PushdownQuery.parse(
+      "selectedFields=0;whereClause=GreaterThan(1,2)");
+
+  @Test
+  public void storletFailureTest() throws Exception {
+    MockSwiftObject store = store();
+    store.failStorlet(new CommandException(503, CommandExceptionError.UNKNOWN));
+    SwiftPushdownInputStream in = open(store);
+    // the query is evaluated by the client on a plain range read
+    Assert.assertEquals("c\nd\n", new String(SwiftInputStreamTest.readAll(in),
+        StandardCharsets.UTF_8));
+    in.close();
+    Mockito.verify(store.getClient()).storletFailed(Matchers.anyString());
+  }
+
+  @Test
+  public void storletBypassTest() throws Exception {
+    MockSwiftObject store = store();
+    SwiftAPIClient client = store.getClient();
+    Whitebox.setInternalState(client, "storletBypasses", new HashMap<String, Long>());
+    Whitebox.setInternalState(client, "pushdownFallbackPeriod", 60000L);
+    Mockito.doCallRealMethod().when(client).storletFailed(Matchers.anyString());
+    Mockito.when(client.isStorletBypassed(Matchers.anyString())).thenCallRealMethod();
+    store.failStorlet(new CommandException(503, CommandExceptionError.UNKNOWN));
+    SwiftPushdownInputStream in = open(store);
+    SwiftInputStreamTest.readAll(in);
+    in.close();
+    store.failStorlet(null);
+    // the failed query is still evaluated by the client
+    in = open(store);
+    Assert.assertEquals("c\nd\n", new String(SwiftInputStreamTest.readAll(in),
+        StandardCharsets.UTF_8));
+    in.close();
+    // another query invokes the storlet, which returns its range as is
+    in = open(store, PushdownQuery.parse("selectedFields=1;whereClause=GreaterThan(1,2)"));
+    Assert.assertNotEquals("3\n4\n", new String(SwiftInputStreamTest.readAll(in),
+        StandardCharsets.UTF_8));
+    in.close();
+    Mockito.verify(client).storletFailed(Matchers.anyString());
+  }
+
+  @Test
+  public void resultCacheTest() throws Exception {
+    MockSwiftObject store = store();
+    PushdownResultCache cache = Mockito.mock(PushdownResultCache.class);
+    Mockito.when(cache.record(Matchers.anyString(), Matchers.any(InputStream.class)))
+        .thenAnswer(AdditionalAnswers.returnsLastArg());
+    Mockito.when(store.getClient().getPushdownCache()).thenReturn(cache);
+    store.failStorlet(new CommandException(503, CommandExceptionError.UNKNOWN));
+    SwiftPushdownInputStream in = open(store);
+    SwiftInputStreamTest.readAll(in);
+    in.close();
+    // the client evaluated result isn't cached as a storlet result
+    Mockito.verify(cache, Mockito.never()).record(Matchers.anyString(),
+        Matchers.any(InputStream.class));
+    store.failStorlet(null);
+    in = open(store);
+    SwiftInputStreamTest.readAll(in);
+    in.close();
+    Mockito.verify(cache).record(Matchers.anyString(), Matchers.any(InputStream.class));
+  }
+
+  @Test
+  public void notFoundTest() throws Exception {
+    MockSwiftObject store = store();
+    store.failStorlet(new NotFoundException(404, CommandExceptionError.ENTITY_DOES_NOT_EXIST));
+    SwiftPushdownInputStream in = open(store);
+    try {
+      in.read();
+      Assert.fail("Missing object read");
+    } catch (FileNotFoundException e) {
+      // expected
+    } finally {
+      in.close();
+    }
+    Mockito.verify(store.getClient(), Mockito.never()).storletFailed(Matchers.anyString());
+  }
+
+  @Test
+  public void unauthorizedTest() throws Exception {
+    MockSwiftObject store = store();
+    store.failStorlet(new UnauthorizedException(401, CommandExceptionError.UNAUTHORIZED));
+    SwiftPushdownInputStream in = open(store);
+    try {
+      in.read();
+      Assert.fail("Unauthorized read");
+    } catch (UnauthorizedException e) {
+      // expected
+    } finally {
+      in.close();
+    }
+    Mockito.verify(store.getClient(), Mockito.never()).storletFailed(Matchers.anyString());
+    Assert.assertEquals(1, store.getRanges().size());
+  }
+
+  @Test
+  public void indexTest() throws Exception {
+    MockSwiftObject store = store(records(200));
+    StoredObject sidecar = enableIndex(store);
+    SwiftPushdownInputStream in = open(store);
+    // the first read doesn't wait for the index, built in background
+    in.seek(2048);
+    in.read();
+    Assert.assertTrue(store.getRanges().contains("2047-4096"));
+    waitForIndex(store);
+    // the records of a block are then read without overlap, block 1 starts
+    // with record 69 and block 2 with record 137
+    in.seek(1024);
+    in.read();
+    List<String> ranges = store.getRanges();
+    Assert.assertEquals("1035-2054", ranges.get(ranges.size() - 1));
+    in.close();
+    // a stream opened with a known status shares the index
+    in = new SwiftPushdownInputStream(store.getClient(), MockSwiftObject.HOST,
+        new Path(MockSwiftObject.HOST + MockSwiftObject.NAME), new FileStatus(3000, false, 1,
+        1024, 0, new Path(MockSwiftObject.HOST + MockSwiftObject.NAME)), QUERY);
+    in.seek(2048);
+    in.read();
+    ranges = store.getRanges();
+    Assert.assertEquals("2055-2999", ranges.get(ranges.size() - 1));
+    in.close();
+    // the sidecar is read once and isn't written by default
+    Mockito.verify(sidecar).downloadObject();
+    Mockito.verify(sidecar, Mockito.never()).uploadObject(Matchers.any(byte[].class));
+  }
+
+  @Test
+  public void indexWriteTest() throws Exception {
+    MockSwiftObject store = store(records(200));
+    StoredObject sidecar = enableIndex(store);
+    Mockito.when(store.getClient().isPushdownIndexWriteEnabled()).thenReturn(true);
+    SwiftPushdownInputStream in = open(store);
+    in.seek(0);
+    in.read();
+    Mockito.verify(sidecar, Mockito.timeout(5000)).uploadObject(Matchers.any(byte[].class));
+    in.close();
+    waitForIndex(store);
+  }
+
+  static MockSwiftObject store() {
+    return store(DATA);
+  }
+
+  static MockSwiftObject store(byte[] data) {
+    MockSwiftObject store = new MockSwiftObject(data);
+    Mockito.when(store.getClient().getCsvRecordDelimiter()).thenReturn("\n");
+    Mockito.when(store.getClient().getMaxRecordSize()).thenReturn(1024L);
+    Mockito.when(store.getClient().getPushdownFallbackPeriod()).thenReturn(60000L);
+    return store;
+  }
+
+  /**
+   * Records of 15 bytes
+   */
+  static byte[] records(int count) {
+    StringBuilder str = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      str.append(String.format("%04d,abcdefghi\n", i));
+    }
+    return str.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Enables the record offset indexes of the client
+   *
+   * @return missing sidecar object of the object
+   */
+  static StoredObject enableIndex(MockSwiftObject store) {
+    SwiftAPIClient client = store.getClient();
+    Whitebox.setInternalState(client, "recordIndexes",
+        new HashMap<String, RecordOffsetIndex>());
+    Mockito.when(client.isPushdownIndexEnabled()).thenReturn(true);
+    Mockito.when(client.getRecordOffsetIndex(Matchers.anyString())).thenCallRealMethod();
+    Mockito.when(client.startRecordOffsetIndex(Matchers.anyString())).thenCallRealMethod();
+    Mockito.doCallRealMethod().when(client).putRecordOffsetIndex(Matchers.anyString(),
+        Matchers.any(RecordOffsetIndex.class));
+    StoredObject sidecar = Mockito.mock(StoredObject.class);
+    Mockito.when(sidecar.downloadObject()).thenThrow(
+        new NotFoundException(404, CommandExceptionError.ENTITY_DOES_NOT_EXIST));
+    Mockito.when(client.getAccount().getContainer("container").getObject(
+        RecordOffsetIndex.getSidecarName(MockSwiftObject.NAME))).thenReturn(sidecar);
+    return sidecar;
+  }
+
+  static void waitForIndex(MockSwiftObject store) throws InterruptedException {
+    Map<String, RecordOffsetIndex> indexes = Whitebox.getInternalState(store.getClient(),
+        "recordIndexes");
+    for (int i = 0; i < 100 && indexes.containsValue(null); i++) {
+      Thread.sleep(50);
+    }
+    Assert.assertEquals(1, indexes.size());
+    Assert.assertFalse(indexes.containsValue(null));
+  }
+
+  static SwiftPushdownInputStream open(MockSwiftObject store) throws IOException {
+    return open(store, QUERY);
+  }
+
+  static SwiftPushdownInputStream open(MockSwiftObject store, PushdownQuery query)
+      throws IOException {
+    return new SwiftPushdownInputStream(store.getClient(), MockSwiftObject.HOST,
+        new Path(MockSwiftObject.HOST + MockSwiftObject.NAME), null, query);
+  }
+}
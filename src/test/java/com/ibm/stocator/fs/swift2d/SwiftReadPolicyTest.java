@@ -0,0 +1,67 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.SwiftReadPolicy;
+
+public class SwiftReadPolicyTest {
+
+  @Test
+  public void fixedPolicyTest() throws Exception {
+    SwiftReadPolicy sequential = new SwiftReadPolicy(SwiftReadPolicy.Mode.SEQUENTIAL, 100,
+        400);
+    sequential.seekRequested();
+    Assert.assertEquals(409, sequential.getRangeEnd(10, 1000));
+    Assert.assertEquals(999, sequential.getRangeEnd(800, 1000));
+    SwiftReadPolicy random = new SwiftReadPolicy(SwiftReadPolicy.Mode.fromString("Random"), 100,
+        400);
+    Assert.assertEquals(109, random.getRangeEnd(10, 1000));
+    Assert.assertEquals(999, random.getRangeEnd(950, 1000));
+    Assert.assertFalse(random.isNextRangeExpected());
+    for (int i = 0; i < SwiftReadPolicy.SEQUENTIAL_RANGES; i++) {
+      random.rangeContinued();
+    }
+    Assert.assertTrue(random.isRandom());
+    Assert.assertTrue(random.isNextRangeExpected());
+    random.seekRequested();
+    Assert.assertFalse(random.isNextRangeExpected());
+  }
+
+  @Test
+  public void adaptivePolicyTest() throws Exception {
+    SwiftReadPolicy policy = new SwiftReadPolicy(SwiftReadPolicy.Mode.ADAPTIVE, 100, 400);
+    Assert.assertFalse(policy.isRandom());
+    Assert.assertEquals(399, policy.getRangeEnd(0, 1000));
+    policy.seekRequested();
+    Assert.assertTrue(policy.isRandom());
+    Assert.assertEquals(599, policy.getRangeEnd(500, 1000));
+    for (int i = 0; i < SwiftReadPolicy.SEQUENTIAL_RANGES; i++) {
+      Assert.assertTrue(policy.isRandom());
+      policy.rangeContinued();
+    }
+    Assert.assertFalse(policy.isRandom());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unknownPolicyTest() throws Exception {
+    SwiftReadPolicy.Mode.fromString("fadvise");
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.SwiftRewindBuffer;
+
+public class SwiftRewindBufferTest {
+
+  private static byte[] content(int from, int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte) (from + i);
+    }
+    return data;
+  }
+
+  @Test
+  public void replayTest() throws Exception {
+    SwiftRewindBuffer buffer = new SwiftRewindBuffer(10);
+    buffer.record(0, content(0, 6), 0, 6);
+    buffer.record(6, 6);
+    buffer.record(7, ByteBuffer.wrap(content(7, 5)));
+    Assert.assertEquals(12, buffer.getEnd());
+    // the first two bytes were overwritten
+    Assert.assertFalse(buffer.contains(1));
+    Assert.assertTrue(buffer.contains(2));
+    Assert.assertFalse(buffer.contains(12));
+    InputStream replay = buffer.replay(4);
+    byte[] data = new byte[8];
+    int total = 0;
+    int result;
+    while ((result = replay.read(data, total, data.length - total)) > 0) {
+      total += result;
+    }
+    Assert.assertEquals(8, total);
+    Assert.assertArrayEquals(content(4, 8), data);
+    Assert.assertEquals(-1, replay.read());
+  }
+
+  @Test
+  public void recordTest() throws Exception {
+    SwiftRewindBuffer buffer = new SwiftRewindBuffer(10);
+    buffer.record(100, content(100, 25), 0, 25);
+    Assert.assertTrue(buffer.contains(115));
+    Assert.assertFalse(buffer.contains(114));
+    // replayed bytes are not recorded again
+    buffer.record(118, content(118, 5), 0, 5);
+    Assert.assertEquals(125, buffer.getEnd());
+    buffer.record(120, content(120, 8), 0, 8);
+    Assert.assertEquals(128, buffer.getEnd());
+    Assert.assertEquals(118, buffer.replay(118).read());
+    // a read after a gap restarts the recorded range
+    buffer.record(200, content(200, 2), 0, 2);
+    Assert.assertFalse(buffer.contains(127));
+    Assert.assertTrue(buffer.contains(200));
+    buffer.reset(202);
+    Assert.assertTrue(buffer.contains(201));
+    buffer.reset(300);
+    Assert.assertFalse(buffer.contains(201));
+  }
+}
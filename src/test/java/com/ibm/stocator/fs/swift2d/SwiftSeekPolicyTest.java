@@ -0,0 +1,61 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.SwiftSeekPolicy;
+
+public class SwiftSeekPolicyTest {
+
+  private static final long MAX_THRESHOLD = 128 * 1024 * 1024;
+
+  @Test
+  public void defaultThresholdTest() {
+    SwiftSeekPolicy policy = new SwiftSeekPolicy(MAX_THRESHOLD);
+    Assert.assertEquals(SwiftSeekPolicy.DEFAULT_SKIP_THRESHOLD, policy.getSkipThreshold());
+    Assert.assertTrue(policy.shouldSkip(SwiftSeekPolicy.DEFAULT_SKIP_THRESHOLD));
+    Assert.assertFalse(policy.shouldSkip(SwiftSeekPolicy.DEFAULT_SKIP_THRESHOLD + 1));
+  }
+
+  @Test
+  public void measuredThresholdTest() {
+    SwiftSeekPolicy policy = new SwiftSeekPolicy(MAX_THRESHOLD);
+    // 100 ms per request, 10 MB read in 1 second
+    policy.requestCompleted(100000000L);
+    policy.bytesRead(10 * 1000 * 1000, 1000000000L);
+    Assert.assertEquals(1000 * 1000, policy.getSkipThreshold());
+    Assert.assertTrue(policy.shouldSkip(900 * 1000));
+    Assert.assertFalse(policy.shouldSkip(1100 * 1000));
+  }
+
+  @Test
+  public void boundedThresholdTest() {
+    SwiftSeekPolicy policy = new SwiftSeekPolicy(MAX_THRESHOLD);
+    // very fast requests: never drop below the minimal threshold
+    policy.requestCompleted(1000L);
+    policy.bytesRead(1000, 1000000000L);
+    Assert.assertEquals(SwiftSeekPolicy.MIN_SKIP_THRESHOLD, policy.getSkipThreshold());
+    // very slow requests: never exceed the max threshold
+    policy = new SwiftSeekPolicy(MAX_THRESHOLD);
+    policy.requestCompleted(100000000000L);
+    policy.bytesRead(1000 * 1000 * 1000, 1000000000L);
+    Assert.assertEquals(MAX_THRESHOLD, policy.getSkipThreshold());
+  }
+}
@@ -0,0 +1,55 @@
+/**
+ * (C) Copyright IBM Corp. 2015, 2016
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.ibm.stocator.fs.swift2d;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.ibm.stocator.fs.swift.SwiftThroughputMonitor;
+
+public class SwiftThroughputMonitorTest {
+
+  private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Test
+  public void stallTest() throws Exception {
+    SwiftThroughputMonitor monitor = new SwiftThroughputMonitor(1000, 2000);
+    Assert.assertFalse(monitor.bytesRead(500, SECOND));
+    // 900 bytes in 2 seconds
+    Assert.assertTrue(monitor.bytesRead(400, SECOND));
+    Assert.assertEquals(1, monitor.getStalls());
+    Assert.assertTrue(monitor.bytesRead(100, 2 * SECOND));
+    Assert.assertEquals(2, monitor.getStalls());
+    // 4000 bytes in 2 seconds
+    Assert.assertFalse(monitor.bytesRead(4000, 2 * SECOND));
+    Assert.assertEquals(0, monitor.getStalls());
+  }
+
+  @Test
+  public void resetTest() throws Exception {
+    SwiftThroughputMonitor monitor = new SwiftThroughputMonitor(1000, 2000);
+    monitor.bytesRead(10, SECOND);
+    monitor.reset();
+    Assert.assertFalse(monitor.bytesRead(3000, SECOND));
+    Assert.assertFalse(monitor.bytesRead(3000, SECOND));
+    SwiftThroughputMonitor disabled = new SwiftThroughputMonitor(0, 2000);
+    Assert.assertFalse(disabled.bytesRead(1, 10 * SECOND));
+  }
+}